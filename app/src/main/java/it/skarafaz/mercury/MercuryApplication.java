@@ -22,7 +22,10 @@ package it.skarafaz.mercury;
 
 import android.app.Activity;
 import android.app.Application;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Environment;
 import android.support.v4.app.ActivityCompat;
@@ -32,6 +35,7 @@ import android.support.v4.app.FragmentTransaction;
 import android.support.v4.content.ContextCompat;
 import android.view.ViewConfiguration;
 import it.skarafaz.mercury.fragment.ProgressDialogFragment;
+import it.skarafaz.mercury.manager.SshManager;
 import org.greenrobot.eventbus.EventBus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +59,16 @@ public class MercuryApplication extends Application {
 
         EventBus.builder().addIndex(new EventBusIndex()).build();
 
+        SshManager.getInstance().prepareInBackground();
+
+        registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                SshManager.getInstance().lockKey();
+                SshManager.getInstance().getSudoCache().clear();
+            }
+        }, new IntentFilter(Intent.ACTION_SCREEN_OFF));
+
         // hack for devices with hw options button
         try {
             ViewConfiguration config = ViewConfiguration.get(this);
@@ -68,6 +82,27 @@ public class MercuryApplication extends Application {
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if (level >= TRIM_MEMORY_RUNNING_LOW && level != TRIM_MEMORY_UI_HIDDEN) {
+            SshManager.getInstance().lockKey();
+        }
+        // sudo passwords do not outlive the app going to background
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            SshManager.getInstance().getSudoCache().clear();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+
+        SshManager.getInstance().lockKey();
+        SshManager.getInstance().getSudoCache().clear();
+    }
+
     public static void showProgressDialog(FragmentManager manager, String content) {
         FragmentTransaction transaction = manager.beginTransaction();
         transaction.add(ProgressDialogFragment.newInstance(content), ProgressDialogFragment.TAG);
@@ -43,7 +43,10 @@ import it.skarafaz.mercury.R;
 import it.skarafaz.mercury.adapter.ServerPagerAdapter;
 import it.skarafaz.mercury.manager.ConfigManager;
 import it.skarafaz.mercury.manager.LoadConfigFilesStatus;
+import it.skarafaz.mercury.ssh.SshCommandBenchmark;
+import it.skarafaz.mercury.ssh.SshCommandExecutor;
 import it.skarafaz.mercury.ssh.SshEventSubscriber;
+import it.skarafaz.mercury.ssh.SshPromptBroker;
 import org.greenrobot.eventbus.EventBus;
 
 public class MainActivity extends MercuryActivity {
@@ -92,6 +95,7 @@ public class MainActivity extends MercuryActivity {
         super.onStart();
 
         EventBus.getDefault().register(sshEventSubscriber);
+        SshPromptBroker.getInstance().replay();
     }
 
     @Override
@@ -116,6 +120,11 @@ public class MainActivity extends MercuryActivity {
             case R.id.action_help:
                 startActivity(new Intent(this, HelpActivity.class));
                 return true;
+            case R.id.action_benchmark:
+                if (serverPagerAdapter.getCount() > 0) {
+                    SshCommandExecutor.getInstance().submit(new SshCommandBenchmark(serverPagerAdapter.getServer(serverPager.getCurrentItem())));
+                }
+                return true;
             case R.id.action_settings:
                 startActivity(new Intent(this, SettingsActivity.class));
                 return true;
@@ -0,0 +1,35 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.activity;
+
+import android.os.Bundle;
+import it.skarafaz.mercury.R;
+
+public class OutputActivity extends MercuryActivity {
+    public static final String OUTPUT_ID_EXTRA = "OUTPUT_ID_EXTRA";
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        setContentView(R.layout.activity_output);
+    }
+}
@@ -26,18 +26,27 @@ import android.content.pm.PackageManager;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.text.InputType;
 import android.widget.Toast;
+import com.afollestad.materialdialogs.DialogAction;
+import com.afollestad.materialdialogs.MaterialDialog;
 import it.skarafaz.mercury.MercuryApplication;
 import it.skarafaz.mercury.R;
 import it.skarafaz.mercury.manager.ExportPublicKeyStatus;
+import it.skarafaz.mercury.manager.GenerateKeyStatus;
 import it.skarafaz.mercury.manager.SshManager;
+import it.skarafaz.mercury.ssh.SshCommandExecutor;
+import it.skarafaz.mercury.ssh.SshCommandPriority;
 import it.skarafaz.mercury.ssh.SshCommandPubKey;
 import it.skarafaz.mercury.ssh.SshEventSubscriber;
+import it.skarafaz.mercury.ssh.SshPromptBroker;
+import org.apache.commons.lang3.StringUtils;
 import org.greenrobot.eventbus.EventBus;
 
 public class SettingsActivity extends MercuryActivity {
     private static final String ACTION_EXPORT_PUBLIC_KEY = "it.skarafaz.mercury.EXPORT_PUBLIC_KEY";
     private static final String ACTION_SEND_PUBLIC_KEY = "it.skarafaz.mercury.SEND_PUBLIC_KEY";
+    private static final String ACTION_GENERATE_KEY = "it.skarafaz.mercury.GENERATE_KEY";
     private static final int PRC_WRITE_EXT_STORAGE = 101;
 
     private SshEventSubscriber sshEventSubscriber;
@@ -61,7 +70,10 @@ public class SettingsActivity extends MercuryActivity {
                     exportPublicKey();
                     break;
                 case ACTION_SEND_PUBLIC_KEY:
-                    new SshCommandPubKey().start();
+                    SshCommandExecutor.getInstance().submit(new SshCommandPubKey(), SshCommandPriority.INTERACTIVE);
+                    break;
+                case ACTION_GENERATE_KEY:
+                    confirmGenerateKeys();
                     break;
             }
         }
@@ -72,6 +84,7 @@ public class SettingsActivity extends MercuryActivity {
         super.onStart();
 
         EventBus.getDefault().register(sshEventSubscriber);
+        SshPromptBroker.getInstance().replay();
     }
 
     @Override
@@ -121,4 +134,56 @@ public class SettingsActivity extends MercuryActivity {
             }
         }.execute();
     }
+
+    private void confirmGenerateKeys() {
+        new MaterialDialog.Builder(this)
+                .title(R.string.settings_generate_key)
+                .content(R.string.generate_key_confirm)
+                .positiveText(R.string.ok)
+                .negativeText(R.string.cancel)
+                .onPositive(new MaterialDialog.SingleButtonCallback() {
+                    @Override
+                    public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
+                        askPassphrase();
+                    }
+                })
+                .show();
+    }
+
+    private void askPassphrase() {
+        new MaterialDialog.Builder(this)
+                .title(R.string.passphrase)
+                .content(R.string.generate_key_passphrase)
+                .positiveText(R.string.ok)
+                .negativeText(R.string.cancel)
+                .inputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD)
+                .input(null, null, true, new MaterialDialog.InputCallback() {
+                    @Override
+                    public void onInput(@NonNull MaterialDialog dialog, CharSequence input) {
+                        generateKeys(StringUtils.defaultIfEmpty(input.toString(), null));
+                    }
+                })
+                .show();
+    }
+
+    private void generateKeys(final String passphrase) {
+        new AsyncTask<Void, Void, GenerateKeyStatus>() {
+            @Override
+            protected void onPreExecute() {
+                MercuryApplication.showProgressDialog(getSupportFragmentManager(), getString(R.string.generating_key));
+            }
+
+            @Override
+            protected GenerateKeyStatus doInBackground(Void... params) {
+                return SshManager.getInstance().generateKeys(passphrase);
+            }
+
+            @Override
+            protected void onPostExecute(GenerateKeyStatus status) {
+                MercuryApplication.dismissProgressDialog(getSupportFragmentManager());
+
+                Toast.makeText(SettingsActivity.this, getString(status.message()), Toast.LENGTH_LONG).show();
+            }
+        }.execute();
+    }
 }
@@ -32,9 +32,18 @@ import butterknife.BindView;
 import butterknife.ButterKnife;
 import com.afollestad.materialdialogs.MaterialDialog;
 import it.skarafaz.mercury.R;
+import it.skarafaz.mercury.manager.ConfigManager;
+import it.skarafaz.mercury.manager.SettingsManager;
+import it.skarafaz.mercury.manager.SshManager;
 import it.skarafaz.mercury.model.config.Command;
+import it.skarafaz.mercury.model.config.Step;
+import it.skarafaz.mercury.ssh.SshCommandExecutor;
+import it.skarafaz.mercury.ssh.SshCommandGroup;
+import it.skarafaz.mercury.ssh.SshCommandPriority;
 import it.skarafaz.mercury.ssh.SshCommandRegular;
+import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class CommandListAdapter extends ArrayAdapter<Command> {
@@ -57,24 +66,65 @@ public class CommandListAdapter extends ArrayAdapter<Command> {
 
         final Command command = getItem(position);
         holder.name.setText(command.getName());
+        holder.name.setAlpha(SshManager.getInstance().getCircuitBreaker().isAvailable(command.getServer().getHost(), command.getServer().getPort()) ? 1f : 0.5f);
         holder.info.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 new MaterialDialog.Builder(getContext())
                         .title(command.getName())
-                        .content(command.getCmd())
+                        .content(formatCommand(command))
                         .show();
             }
         });
         holder.row.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                new SshCommandRegular(command).start();
+                SshCommandExecutor.getInstance().submit(new SshCommandRegular(command), SshCommandPriority.INTERACTIVE);
+            }
+        });
+        holder.row.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                if (command.getServer().getGroups().isEmpty()) {
+                    return false;
+                }
+                selectGroup(command);
+                return true;
             }
         });
         return view;
     }
 
+    private String formatCommand(Command command) {
+        if (command.getSteps().isEmpty()) {
+            return command.getCmd();
+        }
+        List<String> cmds = new ArrayList<>();
+        for (Step step : command.getSteps()) {
+            cmds.add(step.getCmd());
+        }
+        return StringUtils.join(cmds, "\n");
+    }
+
+    private void selectGroup(final Command command) {
+        final List<String> groups = command.getServer().getGroups();
+        new MaterialDialog.Builder(getContext())
+                .title(R.string.run_on_group)
+                .items(groups.toArray(new String[groups.size()]))
+                .itemsCallback(new MaterialDialog.ListCallback() {
+                    @Override
+                    public void onSelection(MaterialDialog dialog, View itemView, int position, CharSequence text) {
+                        runOnGroup(command, groups.get(position));
+                    }
+                })
+                .show();
+    }
+
+    private void runOnGroup(Command command, String group) {
+        int parallelism = SettingsManager.getInstance().getGroupParallelism();
+        new SshCommandGroup(group, command.getName(), ConfigManager.getInstance().getServers(group), parallelism).start();
+    }
+
     static class ViewHolder {
         @BindView(R.id.row)
         RelativeLayout row;
@@ -58,6 +58,10 @@ public class ServerPagerAdapter extends FragmentStatePagerAdapter {
         return POSITION_NONE;
     }
 
+    public Server getServer(int position) {
+        return servers.get(position);
+    }
+
     public void updateServers(List<Server> servers) {
         this.servers.clear();
         this.servers.addAll(servers);
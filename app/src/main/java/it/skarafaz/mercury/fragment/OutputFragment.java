@@ -0,0 +1,161 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.fragment;
+
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.support.v7.app.ActionBar;
+import android.support.v7.app.AppCompatActivity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ScrollView;
+import android.widget.TextView;
+import butterknife.BindView;
+import butterknife.ButterKnife;
+import it.skarafaz.mercury.R;
+import it.skarafaz.mercury.activity.OutputActivity;
+import it.skarafaz.mercury.manager.SshManager;
+import it.skarafaz.mercury.model.event.SshCommandOutput;
+import it.skarafaz.mercury.ssh.SshOutputBuffer;
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import org.greenrobot.eventbus.ThreadMode;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+public class OutputFragment extends Fragment {
+    private static final String CHARSET = "UTF-8";
+
+    @BindView(R.id.scroll)
+    protected ScrollView scroll;
+    @BindView(R.id.output)
+    protected TextView output;
+
+    private SshOutputBuffer buffer;
+    private long position;
+    private CharsetDecoder decoder;
+    private byte[] pending;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        int id = getActivity().getIntent().getIntExtra(OutputActivity.OUTPUT_ID_EXTRA, 0);
+        buffer = SshManager.getInstance().getOutputBuffer(id);
+        decoder = Charset.forName(CHARSET).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_output, container, false);
+        ButterKnife.bind(this, view);
+        return view;
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+
+        EventBus.getDefault().register(this);
+        position = 0;
+        output.setText(null);
+        resetDecoder();
+        refresh();
+    }
+
+    @Override
+    public void onStop() {
+        EventBus.getDefault().unregister(this);
+
+        super.onStop();
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onSshCommandOutput(SshCommandOutput event) {
+        if (buffer != null && buffer.getId() == event.getId()) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        if (buffer == null) {
+            setSubtitle(getString(R.string.output_unavailable));
+            return;
+        }
+
+        buffer.acknowledge();
+        boolean closed = buffer.isClosed();
+        SshOutputBuffer.Chunk chunk = buffer.read(position);
+        String text = decode(chunk.getData(), closed);
+        // keep the view bounded like the buffer behind it
+        if (chunk.isTruncated() || output.length() + text.length() > buffer.getCapacity()) {
+            resetDecoder();
+            chunk = buffer.read(0);
+            output.setText(decode(chunk.getData(), closed));
+        } else {
+            output.append(text);
+        }
+        position = chunk.getEnd();
+
+        setSubtitle(getString(closed ? R.string.output_finished : R.string.output_running, buffer.getTitle()));
+        scroll.post(new Runnable() {
+            @Override
+            public void run() {
+                scroll.fullScroll(View.FOCUS_DOWN);
+            }
+        });
+    }
+
+    private String decode(byte[] data, boolean finished) {
+        // a character split across two chunks is kept back until the rest of it arrives
+        ByteBuffer in = ByteBuffer.allocate(pending.length + data.length);
+        in.put(pending).put(data).flip();
+        CharBuffer out = CharBuffer.allocate((int) (in.remaining() * decoder.maxCharsPerByte()) + 1);
+        decoder.decode(in, out, finished);
+        if (finished) {
+            decoder.flush(out);
+            decoder.reset();
+        }
+        pending = new byte[in.remaining()];
+        in.get(pending);
+        out.flip();
+        return out.toString();
+    }
+
+    private void resetDecoder() {
+        decoder.reset();
+        pending = new byte[0];
+    }
+
+    private void setSubtitle(String subtitle) {
+        ActionBar actionBar = ((AppCompatActivity) getActivity()).getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setSubtitle(subtitle);
+        }
+    }
+}
@@ -28,6 +28,10 @@ import android.view.ViewGroup;
 import it.skarafaz.mercury.R;
 import it.skarafaz.mercury.adapter.CommandListAdapter;
 import it.skarafaz.mercury.model.config.Server;
+import it.skarafaz.mercury.model.event.SshHostStateChanged;
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import org.greenrobot.eventbus.ThreadMode;
 
 public class ServerFragment extends ListFragment {
     public static final String SERVER_ARG = "SERVER_ARG";
@@ -59,4 +63,25 @@ public class ServerFragment extends ListFragment {
 
         setListAdapter(new CommandListAdapter(getActivity(), server.getCommands()));
     }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+
+        EventBus.getDefault().register(this);
+    }
+
+    @Override
+    public void onStop() {
+        EventBus.getDefault().unregister(this);
+
+        super.onStop();
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onSshHostStateChanged(SshHostStateChanged event) {
+        if (event.getHost().equals(server.getHost()) && event.getPort() == server.getPort()) {
+            ((CommandListAdapter) getListAdapter()).notifyDataSetChanged();
+        }
+    }
 }
@@ -24,13 +24,20 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import it.skarafaz.mercury.MercuryApplication;
 import it.skarafaz.mercury.R;
 import it.skarafaz.mercury.model.config.Command;
+import it.skarafaz.mercury.model.config.Crypto;
+import it.skarafaz.mercury.model.config.Retry;
 import it.skarafaz.mercury.model.config.Server;
+import it.skarafaz.mercury.model.config.SocketOptions;
+import it.skarafaz.mercury.model.config.Step;
+import it.skarafaz.mercury.ssh.SshRetryPolicy;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ServerMapper {
@@ -74,6 +81,35 @@ public class ServerMapper {
         if (StringUtils.isBlank(server.getNohupPath())) {
             server.setNohupPath("nohup");
         }
+        if (StringUtils.isBlank(server.getJump())) {
+            server.setJump(null);
+        } else if (!server.getJump().matches("^[^@:]+@[^@:]+(:\\d{1,5})?$")) {
+            errors.put("jump", getString(R.string.validation_invalid));
+        }
+        if (server.getShell() == null) {
+            server.setShell(Boolean.FALSE);
+        }
+        if (server.getSocket() == null) {
+            server.setSocket(new SocketOptions());
+        }
+        errors.putAll(validateSocketOptions(server.getSocket()));
+        if (server.getCrypto() == null) {
+            server.setCrypto(new Crypto());
+        }
+        errors.putAll(validateCrypto(server.getCrypto()));
+        if (server.getRetry() == null) {
+            server.setRetry(new Retry());
+        }
+        errors.putAll(validateRetry(server.getRetry(), null, "retry"));
+        if (server.getGroups() == null) {
+            server.setGroups(new ArrayList<String>());
+        } else {
+            for (int i = 0; i < server.getGroups().size(); i++) {
+                if (StringUtils.isBlank(server.getGroups().get(i))) {
+                    errors.put(String.format("groups[%d]", i), getString(R.string.validation_missing));
+                }
+            }
+        }
         if (server.getCommands() == null) {
             server.setCommands(new ArrayList<Command>());
         } else {
@@ -92,12 +128,117 @@ public class ServerMapper {
         if (command.getSudo() == null) {
             command.setSudo(Boolean.FALSE);
         }
-        if (StringUtils.isBlank(command.getCmd())) {
-            errors.put(String.format("commands[%d].cmd", index), getString(R.string.validation_missing));
+        if (command.getRetry() == null) {
+            command.setRetry(new Retry());
+        }
+        errors.putAll(validateRetry(command.getRetry(), command.getServer().getRetry(), String.format("commands[%d].retry", index)));
+        if (command.getSteps() == null) {
+            command.setSteps(new ArrayList<Step>());
+        }
+        if (command.getSteps().isEmpty()) {
+            if (StringUtils.isBlank(command.getCmd())) {
+                errors.put(String.format("commands[%d].cmd", index), getString(R.string.validation_missing));
+            }
+        } else {
+            for (int i = 0; i < command.getSteps().size(); i++) {
+                errors.putAll(validateStep(command.getSteps().get(i), command, index, i));
+            }
         }
         if (command.getConfirm() == null) {
             command.setConfirm(Boolean.FALSE);
         }
+        if (command.getCapture() == null) {
+            command.setCapture(Boolean.FALSE);
+        }
+        return errors;
+    }
+
+    private Map<String, String> validateSocketOptions(SocketOptions socket) {
+        Map<String, String> errors = new LinkedHashMap<>();
+        if (socket.getKeepAlive() == null) {
+            socket.setKeepAlive(Boolean.TRUE);
+        }
+        if (socket.getSendBufferSize() != null && socket.getSendBufferSize() < 1) {
+            errors.put("socket.sendBufferSize", getString(R.string.validation_invalid));
+        }
+        if (socket.getReceiveBufferSize() != null && socket.getReceiveBufferSize() < 1) {
+            errors.put("socket.receiveBufferSize", getString(R.string.validation_invalid));
+        }
+        return errors;
+    }
+
+    private Map<String, String> validateCrypto(Crypto crypto) {
+        Map<String, String> errors = new LinkedHashMap<>();
+        errors.putAll(validateAlgorithms(crypto.getCiphers(), "crypto.ciphers"));
+        errors.putAll(validateAlgorithms(crypto.getKex(), "crypto.kex"));
+        errors.putAll(validateAlgorithms(crypto.getMacs(), "crypto.macs"));
+        if (crypto.getCompression() != null && (crypto.getCompression() < 0 || crypto.getCompression() > 9)) {
+            errors.put("crypto.compression", getString(R.string.validation_invalid));
+        }
+        return errors;
+    }
+
+    private Map<String, String> validateAlgorithms(List<String> algorithms, String path) {
+        Map<String, String> errors = new LinkedHashMap<>();
+        if (algorithms != null) {
+            if (algorithms.isEmpty()) {
+                errors.put(path, getString(R.string.validation_missing));
+            }
+            for (int i = 0; i < algorithms.size(); i++) {
+                if (StringUtils.isBlank(algorithms.get(i))) {
+                    errors.put(String.format("%s[%d]", path, i), getString(R.string.validation_missing));
+                }
+            }
+        }
+        return errors;
+    }
+
+    private Map<String, String> validateRetry(Retry retry, Retry parent, String path) {
+        Map<String, String> errors = new LinkedHashMap<>();
+        if (retry.getMaxAttempts() == null) {
+            retry.setMaxAttempts(parent != null ? parent.getMaxAttempts() : 1);
+        } else if (retry.getMaxAttempts() < 1) {
+            errors.put(path + ".maxAttempts", getString(R.string.validation_invalid));
+        }
+        if (retry.getBackoffBase() == null) {
+            retry.setBackoffBase(parent != null ? parent.getBackoffBase() : 1000L);
+        } else if (retry.getBackoffBase() < 0) {
+            errors.put(path + ".backoffBase", getString(R.string.validation_invalid));
+        }
+        if (retry.getBackoffCap() == null) {
+            retry.setBackoffCap(parent != null ? parent.getBackoffCap() : 30000L);
+        } else if (retry.getBackoffCap() < 0) {
+            errors.put(path + ".backoffCap", getString(R.string.validation_invalid));
+        }
+        if (retry.getJitter() == null) {
+            retry.setJitter(parent != null ? parent.getJitter() : 0.5);
+        } else if (retry.getJitter() < 0 || retry.getJitter() > 1) {
+            errors.put(path + ".jitter", getString(R.string.validation_invalid));
+        }
+        if (retry.getRetryOn() == null) {
+            retry.setRetryOn(parent != null ? parent.getRetryOn() : Collections.singletonList(SshRetryPolicy.RETRY_ON_CONNECTION));
+        } else {
+            for (int i = 0; i < retry.getRetryOn().size(); i++) {
+                String retryOn = retry.getRetryOn().get(i);
+                if (!SshRetryPolicy.RETRY_ON_CONNECTION.equals(retryOn) && !SshRetryPolicy.RETRY_ON_EXECUTION.equals(retryOn)) {
+                    errors.put(String.format("%s.retryOn[%d]", path, i), getString(R.string.validation_invalid));
+                }
+            }
+        }
+        return errors;
+    }
+
+    private Map<String, String> validateStep(Step step, Command command, int commandIndex, int index) {
+        Map<String, String> errors = new LinkedHashMap<>();
+        if (StringUtils.isBlank(step.getCmd())) {
+            errors.put(String.format("commands[%d].steps[%d].cmd", commandIndex, index), getString(R.string.validation_missing));
+        }
+        if (step.getSudo() == null) {
+            step.setSudo(command.getSudo());
+        }
+        if (step.getContinueOnError() == null) {
+            step.setContinueOnError(Boolean.FALSE);
+        }
         return errors;
     }
 
@@ -26,6 +26,7 @@ import it.skarafaz.mercury.MercuryApplication;
 import it.skarafaz.mercury.jackson.ServerMapper;
 import it.skarafaz.mercury.jackson.ValidationException;
 import it.skarafaz.mercury.model.config.Server;
+import it.skarafaz.mercury.ssh.SshSessionKey;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +36,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ConfigManager {
     private static final Logger logger = LoggerFactory.getLogger(ConfigManager.class);
@@ -67,6 +70,16 @@ public class ConfigManager {
         return servers;
     }
 
+    public List<Server> getServers(String group) {
+        List<Server> members = new ArrayList<>();
+        for (Server server : servers) {
+            if (server.getGroups().contains(group)) {
+                members.add(server);
+            }
+        }
+        return members;
+    }
+
     public LoadConfigFilesStatus loadConfigFiles() {
         servers.clear();
 
@@ -83,6 +96,7 @@ public class ConfigManager {
                         }
                     }
                     Collections.sort(servers);
+                    watchHosts();
                 } else {
                     if (!(MercuryApplication.isExternalStorageWritable() && configDir.mkdirs())) {
                         status = LoadConfigFilesStatus.CANNOT_CREATE_CONFIG_DIR;
@@ -97,6 +111,17 @@ public class ConfigManager {
         return status;
     }
 
+    private void watchHosts() {
+        Set<String> hosts = new HashSet<>();
+        for (Server server : servers) {
+            hosts.add(server.getHost());
+            if (server.getJump() != null) {
+                hosts.add(SshSessionKey.parse(server.getJump()).getHost());
+            }
+        }
+        SshManager.getInstance().getResolver().watch(hosts);
+    }
+
     private Collection<File> listConfigFiles() {
         return FileUtils.listFiles(configDir, new String[] { JSON_EXT, JSON_EXT.toUpperCase() }, false);
     }
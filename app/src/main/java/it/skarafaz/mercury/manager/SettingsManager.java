@@ -0,0 +1,96 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.manager;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import it.skarafaz.mercury.MercuryApplication;
+
+public class SettingsManager {
+    private static final String GROUP_PARALLELISM = "group_parallelism";
+    private static final int DEFAULT_GROUP_PARALLELISM = 4;
+    private static final String CHANNELS_PER_SESSION = "channels_per_session";
+    private static final int DEFAULT_CHANNELS_PER_SESSION = 4;
+    private static final String FAILURE_THRESHOLD = "failure_threshold";
+    private static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    private static final String PROBE_INTERVAL = "probe_interval";
+    private static final int DEFAULT_PROBE_INTERVAL = 30;
+    private static final String SHELL_TIMEOUT = "shell_timeout";
+    private static final int DEFAULT_SHELL_TIMEOUT = 300;
+    private static final String SUDO_CACHE_TTL = "sudo_cache_ttl";
+    private static final int DEFAULT_SUDO_CACHE_TTL = 0;
+    private static final String KEY_TYPE = "key_type";
+    private static final SshKeyType DEFAULT_KEY_TYPE = SshKeyType.ECDSA_256;
+    private static SettingsManager instance;
+    private SharedPreferences preferences;
+
+    private SettingsManager() {
+        preferences = PreferenceManager.getDefaultSharedPreferences(MercuryApplication.getContext());
+    }
+
+    public static synchronized SettingsManager getInstance() {
+        if (instance == null) {
+            instance = new SettingsManager();
+        }
+        return instance;
+    }
+
+    public int getGroupParallelism() {
+        return getInt(GROUP_PARALLELISM, DEFAULT_GROUP_PARALLELISM);
+    }
+
+    public int getChannelsPerSession() {
+        return getInt(CHANNELS_PER_SESSION, DEFAULT_CHANNELS_PER_SESSION);
+    }
+
+    public int getFailureThreshold() {
+        return getInt(FAILURE_THRESHOLD, DEFAULT_FAILURE_THRESHOLD);
+    }
+
+    public int getProbeInterval() {
+        return getInt(PROBE_INTERVAL, DEFAULT_PROBE_INTERVAL);
+    }
+
+    public int getShellTimeout() {
+        return getInt(SHELL_TIMEOUT, DEFAULT_SHELL_TIMEOUT);
+    }
+
+    public int getSudoCacheTtl() {
+        return getInt(SUDO_CACHE_TTL, DEFAULT_SUDO_CACHE_TTL);
+    }
+
+    public SshKeyType getKeyType() {
+        try {
+            return SshKeyType.valueOf(preferences.getString(KEY_TYPE, DEFAULT_KEY_TYPE.name()));
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_KEY_TYPE;
+        }
+    }
+
+    private int getInt(String key, int defaultValue) {
+        // list preferences store their values as strings
+        try {
+            return Integer.parseInt(preferences.getString(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
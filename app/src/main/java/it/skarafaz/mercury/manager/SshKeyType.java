@@ -0,0 +1,54 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.manager;
+
+import com.jcraft.jsch.KeyPair;
+
+public enum SshKeyType {
+    // every type has its own file, so that the key in place tells which type it is
+    RSA_2048(KeyPair.RSA, 2048, "id_rsa"),
+    RSA_4096(KeyPair.RSA, 4096, "id_rsa_4096"),
+    ECDSA_256(KeyPair.ECDSA, 256, "id_ecdsa"),
+    ECDSA_384(KeyPair.ECDSA, 384, "id_ecdsa_384"),
+    ECDSA_521(KeyPair.ECDSA, 521, "id_ecdsa_521");
+
+    private int algorithm;
+    private int size;
+    private String fileName;
+
+    SshKeyType(int algorithm, int size, String fileName) {
+        this.algorithm = algorithm;
+        this.size = size;
+        this.fileName = fileName;
+    }
+
+    public int algorithm() {
+        return algorithm;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String fileName() {
+        return fileName;
+    }
+}
@@ -23,31 +23,91 @@ package it.skarafaz.mercury.manager;
 import android.Manifest;
 import android.content.Context;
 import android.os.Environment;
+import com.jcraft.jsch.Identity;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.KeyPair;
 import it.skarafaz.mercury.MercuryApplication;
+import it.skarafaz.mercury.ssh.SshAdmissionLimiter;
+import it.skarafaz.mercury.ssh.SshAuthMemo;
+import it.skarafaz.mercury.ssh.SshCircuitBreaker;
 import it.skarafaz.mercury.ssh.SshCommandRegular;
+import it.skarafaz.mercury.ssh.SshLatencyTracker;
+import it.skarafaz.mercury.ssh.SshOutputBuffer;
+import it.skarafaz.mercury.ssh.SshResolver;
+import it.skarafaz.mercury.ssh.SshSessionPool;
+import it.skarafaz.mercury.ssh.SshSudoCache;
+import it.skarafaz.mercury.ssh.SshWarmUp;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public class SshManager {
     private static final String SSH_DIR = "ssh";
     private static final String KNOWN_HOSTS_FILE = "known_hosts";
-    private static final int PRIVATE_KEY_LENGTH = 2048;
-    private static final String PRIVATE_KEY_FILE = "id_rsa";
-    private static final String PUBLIC_KEY_FILE = "id_rsa.pub";
+    private static final String PUBLIC_KEY_EXT = ".pub";
+    private static final String TMP_EXT = ".tmp";
     private static final String PUBLIC_KEY_COMMENT = "mercuryssh";
+    private static final int MAX_OUTPUT_BUFFERS = 4;
+    private static final int OUTPUT_BUFFER_CAPACITY = 64 * 1024;
+    private static final long KEY_IDLE_TIMEOUT = 15 * 60 * 1000;
+    private static final long KEY_LOCK_CHECK_INTERVAL = 60 * 1000;
     private static final Logger logger = LoggerFactory.getLogger(SshCommandRegular.class);
     private static SshManager instance;
+    private final Object keyLock = new Object();
     private JSch jsch;
+    private SshSessionPool sessionPool;
+    private SshLatencyTracker latencyTracker;
+    private SshCircuitBreaker circuitBreaker;
+    private SshAdmissionLimiter admissionLimiter;
+    private SshResolver resolver;
+    private SshAuthMemo authMemo;
+    private SshSudoCache sudoCache;
+    private Map<Integer, SshOutputBuffer> outputBuffers;
+    private int lastOutputId;
+    private boolean knownHostsLoaded;
+    private boolean identityLoaded;
+    private long knownHostsModified;
+    private long privateKeyModified;
+    private boolean keyEncrypted;
+    private long keyUsed;
 
     private SshManager() {
         this.jsch = new JSch();
+        this.sessionPool = new SshSessionPool();
+        this.latencyTracker = new SshLatencyTracker();
+        this.circuitBreaker = new SshCircuitBreaker();
+        this.admissionLimiter = new SshAdmissionLimiter();
+        this.resolver = new SshResolver();
+        this.authMemo = new SshAuthMemo();
+        this.sudoCache = new SshSudoCache();
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ssh-key-lock");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }).scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                lockKeyIfIdle();
+            }
+        }, KEY_LOCK_CHECK_INTERVAL, KEY_LOCK_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        this.outputBuffers = new LinkedHashMap<Integer, SshOutputBuffer>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, SshOutputBuffer> eldest) {
+                return size() > MAX_OUTPUT_BUFFERS;
+            }
+        };
     }
 
     public static synchronized SshManager getInstance() {
@@ -57,26 +117,159 @@ public class SshManager {
         return instance;
     }
 
-    public File getKnownHosts() throws IOException {
-        File file = getKnownHostsFile();
-        file.createNewFile();
-        return file;
+    public SshSessionPool getSessionPool() {
+        return sessionPool;
+    }
+
+    public SshLatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    public SshCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public SshAdmissionLimiter getAdmissionLimiter() {
+        return admissionLimiter;
+    }
+
+    public SshResolver getResolver() {
+        return resolver;
+    }
+
+    public SshAuthMemo getAuthMemo() {
+        return authMemo;
+    }
+
+    public SshSudoCache getSudoCache() {
+        return sudoCache;
+    }
+
+    public synchronized SshOutputBuffer createOutputBuffer(String title) {
+        SshOutputBuffer buffer = new SshOutputBuffer(++lastOutputId, title, OUTPUT_BUFFER_CAPACITY);
+        outputBuffers.put(buffer.getId(), buffer);
+        return buffer;
+    }
+
+    public synchronized SshOutputBuffer getOutputBuffer(int id) {
+        return outputBuffers.get(id);
+    }
+
+    public synchronized JSch getJSch() throws IOException, JSchException {
+        File knownHosts = getKnownHostsFile();
+        if (!knownHostsLoaded || knownHosts.lastModified() != knownHostsModified) {
+            loadKnownHosts(knownHosts);
+        }
+        // jsch rewrites known_hosts whenever a host key is accepted, that must not lock the key again
+        File privateKey = findPrivateKeyFile();
+        long modified = privateKey != null ? privateKey.lastModified() : 0;
+        if (!identityLoaded || modified != privateKeyModified) {
+            loadIdentity(privateKey);
+        }
+        keyUsed = System.currentTimeMillis();
+        return jsch;
+    }
+
+    public synchronized void invalidate() {
+        knownHostsLoaded = false;
+        identityLoaded = false;
+    }
+
+    public synchronized void lockKey() {
+        // like an agent, an unlocked key is only kept in memory until it is locked again
+        if (keyEncrypted && isKeyUnlocked()) {
+            try {
+                jsch.removeAllIdentity();
+            } catch (JSchException e) {
+                logger.error(e.getMessage().replace("\n", " "));
+            }
+            identityLoaded = false;
+            logger.info("private key locked");
+        }
+    }
+
+    public synchronized boolean isKeyLocked() throws IOException, JSchException {
+        getJSch();
+        return keyEncrypted && !isKeyUnlocked();
+    }
+
+    public synchronized boolean unlockKey(String passphrase) throws IOException, JSchException {
+        boolean unlocked = false;
+        for (Object identity : getJSch().getIdentityRepository().getIdentities()) {
+            unlocked |= ((Identity) identity).setPassphrase(passphrase.getBytes("UTF-8"));
+        }
+        if (unlocked) {
+            logger.info("private key unlocked");
+        }
+        return unlocked;
+    }
+
+    private synchronized void lockKeyIfIdle() {
+        if (System.currentTimeMillis() - keyUsed > KEY_IDLE_TIMEOUT) {
+            lockKey();
+        }
+    }
+
+    private boolean isKeyUnlocked() {
+        for (Object identity : jsch.getIdentityRepository().getIdentities()) {
+            if (!((Identity) identity).isEncrypted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void prepareInBackground() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getPrivateKey();
+                    getJSch();
+                } catch (IOException | JSchException e) {
+                    logger.error(e.getMessage().replace("\n", " "));
+                }
+                new SshWarmUp().run();
+            }
+        }, "ssh-prepare");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public GenerateKeyStatus generateKeys(String passphrase) {
+        GenerateKeyStatus status = GenerateKeyStatus.SUCCESS;
+        synchronized (keyLock) {
+            try {
+                deleteKeys();
+                generateKeyPair(SettingsManager.getInstance().getKeyType(), passphrase);
+            } catch (IOException | JSchException e) {
+                status = GenerateKeyStatus.ERROR;
+                logger.error(e.getMessage().replace("\n", " "));
+            }
+        }
+        return status;
     }
 
     public File getPrivateKey() throws IOException, JSchException {
-        File file = getPrivateKeyFile();
-        if (!file.exists()) {
-            generatePrivateKey(file);
+        synchronized (keyLock) {
+            File file = findPrivateKeyFile();
+            if (file == null) {
+                generateKeyPair(SettingsManager.getInstance().getKeyType(), null);
+                file = findPrivateKeyFile();
+            }
+            return file;
         }
-        return file;
     }
 
     public File getPublicKey() throws IOException, JSchException {
-        File file = getPublicKeyFile();
-        if (!file.exists()) {
-            generatePublicKey(file);
+        synchronized (keyLock) {
+            File privateKey = getPrivateKey();
+            File file = getPublicKeyFile(privateKey);
+            if (!file.exists()) {
+                generatePublicKey(privateKey, file);
+            }
+            return file;
         }
-        return file;
     }
 
     public String getPublicKeyContent() throws IOException, JSchException {
@@ -84,7 +277,11 @@ public class SshManager {
     }
 
     public File getPublicKeyExportedFile() {
-        return new File(Environment.getExternalStorageDirectory(), PUBLIC_KEY_FILE);
+        File privateKey = findPrivateKeyFile();
+        if (privateKey == null) {
+            privateKey = new File(getSshDir(), SettingsManager.getInstance().getKeyType().fileName());
+        }
+        return new File(Environment.getExternalStorageDirectory(), getPublicKeyFile(privateKey).getName());
     }
 
     public ExportPublicKeyStatus exportPublicKey() {
@@ -110,27 +307,92 @@ public class SshManager {
         return new File(getSshDir(), KNOWN_HOSTS_FILE);
     }
 
-    private File getPrivateKeyFile() {
-        return new File(getSshDir(), PRIVATE_KEY_FILE);
+    private File findPrivateKeyFile() {
+        File file = new File(getSshDir(), SettingsManager.getInstance().getKeyType().fileName());
+        if (file.exists()) {
+            return file;
+        }
+        for (SshKeyType type : SshKeyType.values()) {
+            file = new File(getSshDir(), type.fileName());
+            if (file.exists()) {
+                return file;
+            }
+        }
+        return null;
     }
 
-    private File getPublicKeyFile() {
-        return new File(getSshDir(), PUBLIC_KEY_FILE);
+    private File getPublicKeyFile(File privateKey) {
+        return new File(getSshDir(), privateKey.getName() + PUBLIC_KEY_EXT);
     }
 
     private File getSshDir() {
         return MercuryApplication.getContext().getDir(SSH_DIR, Context.MODE_PRIVATE);
     }
 
-    private void generatePrivateKey(File file) throws IOException, JSchException {
-        KeyPair kpair = KeyPair.genKeyPair(jsch, KeyPair.RSA, PRIVATE_KEY_LENGTH);
-        kpair.writePrivateKey(file.getAbsolutePath());
-        kpair.dispose();
+    private void loadKnownHosts(File knownHosts) throws IOException, JSchException {
+        knownHosts.createNewFile();
+        jsch.setKnownHosts(knownHosts.getAbsolutePath());
+        knownHostsModified = knownHosts.lastModified();
+        knownHostsLoaded = true;
+        logger.debug("known hosts loaded");
+    }
+
+    private void loadIdentity(File privateKey) throws JSchException {
+        jsch.removeAllIdentity();
+        keyEncrypted = false;
+        if (privateKey != null) {
+            jsch.addIdentity(privateKey.getAbsolutePath());
+            keyEncrypted = !isKeyUnlocked();
+        } else {
+            logger.warn("private key not generated yet, only password authentication is available");
+        }
+
+        privateKeyModified = privateKey != null ? privateKey.lastModified() : 0;
+        identityLoaded = true;
+        logger.debug("identity loaded");
     }
 
-    private void generatePublicKey(File file) throws IOException, JSchException {
-        KeyPair kpair = KeyPair.load(jsch, getPrivateKey().getAbsolutePath());
+    private void generateKeyPair(SshKeyType type, String passphrase) throws IOException, JSchException {
+        long start = System.currentTimeMillis();
+        File privateKey = new File(getSshDir(), type.fileName());
+        File publicKey = getPublicKeyFile(privateKey);
+        File privateKeyTmp = new File(getSshDir(), privateKey.getName() + TMP_EXT);
+        File publicKeyTmp = new File(getSshDir(), publicKey.getName() + TMP_EXT);
+
+        KeyPair kpair = KeyPair.genKeyPair(jsch, type.algorithm(), type.size());
+        try {
+            kpair.writePrivateKey(privateKeyTmp.getAbsolutePath(), passphrase != null ? passphrase.getBytes("UTF-8") : null);
+            kpair.writePublicKey(publicKeyTmp.getAbsolutePath(), PUBLIC_KEY_COMMENT);
+        } finally {
+            kpair.dispose();
+        }
+
+        // commands pick up the key as soon as the private key file shows up, so it goes last
+        rename(publicKeyTmp, publicKey);
+        rename(privateKeyTmp, privateKey);
+        invalidate();
+        logger.info("{} key generated in {} ms", type, System.currentTimeMillis() - start);
+    }
+
+    private void generatePublicKey(File privateKey, File file) throws IOException, JSchException {
+        KeyPair kpair = KeyPair.load(jsch, privateKey.getAbsolutePath());
         kpair.writePublicKey(file.getAbsolutePath(), PUBLIC_KEY_COMMENT);
         kpair.dispose();
     }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private void deleteKeys() {
+        for (SshKeyType type : SshKeyType.values()) {
+            File privateKey = new File(getSshDir(), type.fileName());
+            privateKey.delete();
+            getPublicKeyFile(privateKey).delete();
+        }
+        invalidate();
+    }
+
+    private void rename(File src, File dest) throws IOException {
+        if (!src.renameTo(dest)) {
+            throw new IOException(String.format("cannot rename %s to %s", src, dest));
+        }
+    }
 }
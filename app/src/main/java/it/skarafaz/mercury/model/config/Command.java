@@ -24,6 +24,7 @@ import android.support.annotation.NonNull;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 
 import java.io.Serializable;
+import java.util.List;
 
 @SuppressWarnings("unused")
 public class Command implements Serializable, Comparable<Command> {
@@ -32,6 +33,9 @@ public class Command implements Serializable, Comparable<Command> {
     private Boolean sudo;
     private String cmd;
     private Boolean confirm;
+    private Boolean capture;
+    private Retry retry;
+    private List<Step> steps;
     private Server server;
 
     public String getName() {
@@ -66,6 +70,30 @@ public class Command implements Serializable, Comparable<Command> {
         this.confirm = confirm;
     }
 
+    public Boolean getCapture() {
+        return capture;
+    }
+
+    public void setCapture(Boolean capture) {
+        this.capture = capture;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public void setRetry(Retry retry) {
+        this.retry = retry;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public void setSteps(List<Step> steps) {
+        this.steps = steps;
+    }
+
     @JsonBackReference
     public Server getServer() {
         return server;
@@ -0,0 +1,65 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.model.config;
+
+import java.io.Serializable;
+import java.util.List;
+
+@SuppressWarnings("unused")
+public class Crypto implements Serializable {
+    private static final long serialVersionUID = -6513283526290750912L;
+    private List<String> ciphers;
+    private List<String> kex;
+    private List<String> macs;
+    private Integer compression;
+
+    public List<String> getCiphers() {
+        return ciphers;
+    }
+
+    public void setCiphers(List<String> ciphers) {
+        this.ciphers = ciphers;
+    }
+
+    public List<String> getKex() {
+        return kex;
+    }
+
+    public void setKex(List<String> kex) {
+        this.kex = kex;
+    }
+
+    public List<String> getMacs() {
+        return macs;
+    }
+
+    public void setMacs(List<String> macs) {
+        this.macs = macs;
+    }
+
+    public Integer getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Integer compression) {
+        this.compression = compression;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.model.config;
+
+import java.io.Serializable;
+import java.util.List;
+
+@SuppressWarnings("unused")
+public class Retry implements Serializable {
+    private static final long serialVersionUID = -3190417682263417025L;
+    private Integer maxAttempts;
+    private Long backoffBase;
+    private Long backoffCap;
+    private Double jitter;
+    private List<String> retryOn;
+
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(Integer maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Long getBackoffBase() {
+        return backoffBase;
+    }
+
+    public void setBackoffBase(Long backoffBase) {
+        this.backoffBase = backoffBase;
+    }
+
+    public Long getBackoffCap() {
+        return backoffCap;
+    }
+
+    public void setBackoffCap(Long backoffCap) {
+        this.backoffCap = backoffCap;
+    }
+
+    public Double getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(Double jitter) {
+        this.jitter = jitter;
+    }
+
+    public List<String> getRetryOn() {
+        return retryOn;
+    }
+
+    public void setRetryOn(List<String> retryOn) {
+        this.retryOn = retryOn;
+    }
+}
@@ -36,6 +36,12 @@ public class Server implements Serializable, Comparable<Server> {
     private String password;
     private String sudoPath;
     private String nohupPath;
+    private String jump;
+    private Boolean shell;
+    private SocketOptions socket;
+    private Crypto crypto;
+    private Retry retry;
+    private List<String> groups;
     private List<Command> commands;
 
     public String getName() {
@@ -94,6 +100,54 @@ public class Server implements Serializable, Comparable<Server> {
         this.nohupPath = nohupPath;
     }
 
+    public String getJump() {
+        return jump;
+    }
+
+    public void setJump(String jump) {
+        this.jump = jump;
+    }
+
+    public Boolean getShell() {
+        return shell;
+    }
+
+    public void setShell(Boolean shell) {
+        this.shell = shell;
+    }
+
+    public SocketOptions getSocket() {
+        return socket;
+    }
+
+    public void setSocket(SocketOptions socket) {
+        this.socket = socket;
+    }
+
+    public Crypto getCrypto() {
+        return crypto;
+    }
+
+    public void setCrypto(Crypto crypto) {
+        this.crypto = crypto;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public void setRetry(Retry retry) {
+        this.retry = retry;
+    }
+
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(List<String> groups) {
+        this.groups = groups;
+    }
+
     @JsonManagedReference
     public List<Command> getCommands() {
         return commands;
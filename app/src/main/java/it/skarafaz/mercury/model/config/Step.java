@@ -0,0 +1,55 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.model.config;
+
+import java.io.Serializable;
+
+@SuppressWarnings("unused")
+public class Step implements Serializable {
+    private static final long serialVersionUID = 4420917337259648146L;
+    private String cmd;
+    private Boolean sudo;
+    private Boolean continueOnError;
+
+    public String getCmd() {
+        return cmd;
+    }
+
+    public void setCmd(String cmd) {
+        this.cmd = cmd;
+    }
+
+    public Boolean getSudo() {
+        return sudo;
+    }
+
+    public void setSudo(Boolean sudo) {
+        this.sudo = sudo;
+    }
+
+    public Boolean getContinueOnError() {
+        return continueOnError;
+    }
+
+    public void setContinueOnError(Boolean continueOnError) {
+        this.continueOnError = continueOnError;
+    }
+}
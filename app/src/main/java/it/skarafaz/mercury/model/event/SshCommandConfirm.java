@@ -20,22 +20,14 @@
 
 package it.skarafaz.mercury.model.event;
 
-import it.skarafaz.mercury.ssh.SshCommandDrop;
-
-public class SshCommandConfirm {
+public class SshCommandConfirm extends SshPromptEvent<Boolean> {
     private String cmd;
-    private SshCommandDrop<Boolean> drop;
 
-    public SshCommandConfirm(String cmd, SshCommandDrop<Boolean> drop) {
+    public SshCommandConfirm(String cmd) {
         this.cmd = cmd;
-        this.drop = drop;
     }
 
     public String getCmd() {
         return cmd;
     }
-
-    public SshCommandDrop<Boolean> getDrop() {
-        return drop;
-    }
 }
@@ -24,12 +24,24 @@ import it.skarafaz.mercury.ssh.SshCommandStatus;
 
 public class SshCommandEnd {
     private SshCommandStatus status;
+    private int attempts;
+    private long elapsed;
 
-    public SshCommandEnd(SshCommandStatus status) {
+    public SshCommandEnd(SshCommandStatus status, int attempts, long elapsed) {
         this.status = status;
+        this.attempts = attempts;
+        this.elapsed = elapsed;
     }
 
     public SshCommandStatus getStatus() {
         return status;
     }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
 }
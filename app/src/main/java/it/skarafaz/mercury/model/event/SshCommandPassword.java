@@ -20,19 +20,11 @@
 
 package it.skarafaz.mercury.model.event;
 
-import it.skarafaz.mercury.ssh.SshCommandDrop;
-
-public class SshCommandPassword {
+public class SshCommandPassword extends SshPromptEvent<String> {
     private String message;
-    private SshCommandDrop<String> drop;
 
-    public SshCommandPassword(String message, SshCommandDrop<String> drop) {
+    public SshCommandPassword(String message) {
         this.message = message;
-        this.drop = drop;
-    }
-
-    public SshCommandDrop<String> getDrop() {
-        return drop;
     }
 
     public String getMessage() {
@@ -21,4 +21,13 @@
 package it.skarafaz.mercury.model.event;
 
 public class SshCommandStart {
+    private Integer outputId;
+
+    public SshCommandStart(Integer outputId) {
+        this.outputId = outputId;
+    }
+
+    public Integer getOutputId() {
+        return outputId;
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import com.jcraft.jsch.JSchException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SshAdmissionLimiter {
+    private static final double INITIAL_WINDOW = 4;
+    private static final double MIN_WINDOW = 1;
+    private static final double MAX_WINDOW = 16;
+    private static final String SATURATED = "handshake window full";
+    private static final Logger logger = LoggerFactory.getLogger(SshAdmissionLimiter.class);
+    private final Map<String, Limit> limits;
+
+    public SshAdmissionLimiter() {
+        limits = new HashMap<>();
+    }
+
+    public static boolean isRejection(JSchException e) {
+        // sshd drops the connections exceeding MaxStartups before sending its banner
+        String message = e.getMessage();
+        return message != null && (message.startsWith(SATURATED) || message.contains("End of IO Stream Read") || message.contains("connection is closed by foreign host") || message.contains("Connection reset"));
+    }
+
+    public static boolean isSaturated(JSchException e) {
+        return e.getMessage() != null && e.getMessage().startsWith(SATURATED);
+    }
+
+    public synchronized Permit acquire(String host, int port, int timeout) throws JSchException {
+        Limit limit = getLimit(host, port);
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            while (limit.handshakes >= (int) limit.window) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    // the wait counts against the connect timeout, a host this busy is treated as rejecting us
+                    throw new JSchException(String.format("%s: %d handshakes to %s:%d in progress", SATURATED, limit.handshakes, host, port));
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JSchException("interrupted while waiting to connect");
+        }
+        limit.handshakes++;
+        return new Permit(host, port);
+    }
+
+    public synchronized void suspend(Permit permit) {
+        // a handshake waiting for the user holds no slot, other commands may connect meanwhile
+        if (!permit.suspended) {
+            permit.suspended = true;
+            getLimit(permit.host, permit.port).handshakes--;
+            notifyAll();
+        }
+    }
+
+    public synchronized void release(Permit permit, JSchException failure) {
+        Limit limit = getLimit(permit.host, permit.port);
+        if (!permit.suspended) {
+            limit.handshakes--;
+        }
+        if (failure == null) {
+            // a handshake that waited for the user says nothing about what the host can take
+            if (!permit.suspended) {
+                limit.window = Math.min(MAX_WINDOW, limit.window + 1 / limit.window);
+            }
+        } else if (isRejection(failure)) {
+            limit.window = Math.max(MIN_WINDOW, limit.window / 2);
+            logger.info("connection to {}:{} rejected, handshake window is now {}", permit.host, permit.port, (int) limit.window);
+        }
+        notifyAll();
+    }
+
+    private Limit getLimit(String host, int port) {
+        String key = String.format("%s:%d", host, port);
+        Limit limit = limits.get(key);
+        if (limit == null) {
+            limit = new Limit();
+            limits.put(key, limit);
+        }
+        return limit;
+    }
+
+    public static class Permit {
+        private final String host;
+        private final int port;
+        private boolean suspended;
+
+        private Permit(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+    }
+
+    private static class Limit {
+        private double window = INITIAL_WINDOW;
+        private int handshakes;
+    }
+}
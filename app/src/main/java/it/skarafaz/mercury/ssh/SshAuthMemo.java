@@ -0,0 +1,107 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.jcraft.jsch.JSch;
+import it.skarafaz.mercury.MercuryApplication;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SshAuthMemo {
+    private static final String PREFERENCES = "auth_memo";
+    private static final String PASSWORD = "password";
+    private static final String SUCCESS_PREFIX = "Authentication succeeded (";
+    private static final Logger logger = LoggerFactory.getLogger(SshAuthMemo.class);
+    private final SharedPreferences preferences;
+    private final ThreadLocal<String> succeeded;
+
+    public SshAuthMemo() {
+        preferences = MercuryApplication.getContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        succeeded = new ThreadLocal<>();
+        // jsch only reports the method that succeeded through its logger, handshakes run on the connecting thread;
+        // this depends on the wording of its log message, if that ever changes nothing is remembered and the
+        // configured order is used as is
+        final com.jcraft.jsch.Logger previous = getLogger();
+        JSch.setLogger(new com.jcraft.jsch.Logger() {
+            @Override
+            public boolean isEnabled(int level) {
+                return level == INFO || previous != null && previous.isEnabled(level);
+            }
+
+            @Override
+            public void log(int level, String message) {
+                if (level == INFO && message != null && message.startsWith(SUCCESS_PREFIX) && message.indexOf(')') > 0) {
+                    succeeded.set(message.substring(SUCCESS_PREFIX.length(), message.indexOf(')')));
+                }
+                if (previous != null && previous.isEnabled(level)) {
+                    previous.log(level, message);
+                }
+            }
+        });
+    }
+
+    public String order(SshSessionKey key, String methods) {
+        String memo = preferences.getString(getMemoKey(key), null);
+        List<String> ordered = new ArrayList<>(Arrays.asList(methods.split(",")));
+        // without a stored password the key is tried before prompting for one
+        if (PASSWORD.equals(memo) && key.getPassword() == null) {
+            memo = null;
+        }
+        if (memo != null && ordered.remove(memo)) {
+            ordered.add(0, memo);
+        }
+        succeeded.remove();
+        return StringUtils.join(ordered, ",");
+    }
+
+    public void remember(SshSessionKey key) {
+        String method = succeeded.get();
+        succeeded.remove();
+        if (method != null && !method.equals(preferences.getString(getMemoKey(key), null))) {
+            preferences.edit().putString(getMemoKey(key), method).apply();
+            logger.debug("{} authenticates with {}", getMemoKey(key), method);
+        }
+    }
+
+    private static com.jcraft.jsch.Logger getLogger() {
+        // jsch has no public getter for the logger it was given
+        try {
+            Field field = JSch.class.getDeclaredField("logger");
+            field.setAccessible(true);
+            return (com.jcraft.jsch.Logger) field.get(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            logger.warn("cannot read the jsch logger, its messages are dropped");
+            return null;
+        }
+    }
+
+    private String getMemoKey(SshSessionKey key) {
+        return String.format("%s@%s:%d", key.getUser(), key.getHost(), key.getPort());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import it.skarafaz.mercury.model.config.Crypto;
+
+public class SshBenchmarkResult {
+    private String name;
+    private Crypto crypto;
+    private long handshake;
+    private long transfer;
+    private boolean failed;
+
+    public SshBenchmarkResult(String name, Crypto crypto) {
+        this.name = name;
+        this.crypto = crypto;
+        this.failed = true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Crypto getCrypto() {
+        return crypto;
+    }
+
+    public long getHandshake() {
+        return handshake;
+    }
+
+    public long getTransfer() {
+        return transfer;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public long getTotal() {
+        return handshake + transfer;
+    }
+
+    void setTimes(long handshake, long transfer) {
+        this.handshake = handshake;
+        this.transfer = transfer;
+        this.failed = false;
+    }
+}
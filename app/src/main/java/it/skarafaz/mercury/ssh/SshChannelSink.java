@@ -0,0 +1,69 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SshChannelSink extends OutputStream {
+    private final CountDownLatch closed;
+    private final ByteArrayOutputStream content;
+    private final int limit;
+    private final SshOutputBuffer output;
+
+    public SshChannelSink(int limit, SshOutputBuffer output) {
+        this.closed = new CountDownLatch(1);
+        this.content = new ByteArrayOutputStream();
+        this.limit = limit;
+        this.output = output;
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        int room = limit - content.size();
+        if (room > 0) {
+            content.write(b, off, Math.min(room, len));
+        }
+        if (output != null) {
+            output.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed.countDown();
+    }
+
+    public boolean awaitClose(long timeout) throws InterruptedException {
+        return closed.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized String getContent() {
+        return content.toString().trim();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import com.jcraft.jsch.JSchException;
+import it.skarafaz.mercury.manager.SettingsManager;
+import it.skarafaz.mercury.model.event.SshHostStateChanged;
+import org.greenrobot.eventbus.EventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SshCircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(SshCircuitBreaker.class);
+    private final Map<String, Circuit> circuits;
+
+    public SshCircuitBreaker() {
+        circuits = new HashMap<>();
+    }
+
+    public boolean allow(String host, int port) {
+        synchronized (this) {
+            Circuit circuit = circuits.get(getKey(host, port));
+            if (circuit == null || circuit.state == State.CLOSED) {
+                return true;
+            }
+            if (circuit.state == State.HALF_OPEN) {
+                return false;
+            }
+            long probeInterval = SettingsManager.getInstance().getProbeInterval() * 1000L;
+            if (System.currentTimeMillis() - circuit.openedAt < probeInterval) {
+                return false;
+            }
+            // a single command probes the host, the others keep failing fast until it is done
+            circuit.state = State.HALF_OPEN;
+        }
+        logger.info("probing {}:{}", host, port);
+        return true;
+    }
+
+    public void onSuccess(String host, int port) {
+        boolean changed;
+        synchronized (this) {
+            Circuit circuit = circuits.remove(getKey(host, port));
+            changed = circuit != null && circuit.state != State.CLOSED;
+        }
+        if (changed) {
+            logger.info("{}:{} is available again", host, port);
+            EventBus.getDefault().post(new SshHostStateChanged(host, port, true));
+        }
+    }
+
+    public void onFailure(String host, int port, JSchException e) {
+        // the jump host keeps track of its own failures, a probe of the target is simply given back
+        if (e instanceof SshJumpException) {
+            release(host, port);
+            return;
+        }
+        if (!isUnreachable(e)) {
+            if (isAnswered(e)) {
+                onSuccess(host, port);
+            } else {
+                release(host, port);
+            }
+            return;
+        }
+
+        boolean changed = false;
+        synchronized (this) {
+            String key = getKey(host, port);
+            Circuit circuit = circuits.get(key);
+            if (circuit == null) {
+                circuit = new Circuit();
+                circuits.put(key, circuit);
+            }
+            circuit.failures++;
+            if (circuit.state == State.HALF_OPEN || circuit.failures >= SettingsManager.getInstance().getFailureThreshold()) {
+                changed = circuit.state == State.CLOSED;
+                circuit.state = State.OPEN;
+                circuit.openedAt = System.currentTimeMillis();
+            }
+        }
+        if (changed) {
+            logger.warn("{}:{} is unavailable", host, port);
+            EventBus.getDefault().post(new SshHostStateChanged(host, port, false));
+        }
+    }
+
+    public synchronized void release(String host, int port) {
+        // a probe that ended without telling anything about the host lets the next command probe again
+        Circuit circuit = circuits.get(getKey(host, port));
+        if (circuit != null && circuit.state == State.HALF_OPEN) {
+            circuit.state = State.OPEN;
+        }
+    }
+
+    public synchronized boolean isAvailable(String host, int port) {
+        Circuit circuit = circuits.get(getKey(host, port));
+        return circuit == null || circuit.state == State.CLOSED;
+    }
+
+    private boolean isUnreachable(JSchException e) {
+        // authentication, host key and MaxStartups failures prove the host is up
+        if (SshAdmissionLimiter.isRejection(e)) {
+            return false;
+        }
+        return e.getCause() instanceof IOException || (e.getMessage() != null && e.getMessage().startsWith("timeout"));
+    }
+
+    private boolean isAnswered(JSchException e) {
+        // only a server taking part in the handshake proves that the host is up
+        String message = e.getMessage();
+        return (SshAdmissionLimiter.isRejection(e) && !SshAdmissionLimiter.isSaturated(e)) || (message != null && (message.startsWith("Auth ")
+                || message.contains("HostKey") || message.startsWith("Algorithm negotiation fail")));
+    }
+
+    private String getKey(String host, int port) {
+        return String.format("%s:%d", host, port);
+    }
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static class Circuit {
+        private State state = State.CLOSED;
+        private int failures;
+        private long openedAt;
+    }
+}
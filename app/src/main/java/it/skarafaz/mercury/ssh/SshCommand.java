@@ -21,18 +21,24 @@
 package it.skarafaz.mercury.ssh;
 
 import com.jcraft.jsch.*;
+import it.skarafaz.mercury.manager.SettingsManager;
+import it.skarafaz.mercury.manager.SshManager;
+import it.skarafaz.mercury.model.config.Crypto;
+import it.skarafaz.mercury.model.config.SocketOptions;
 import it.skarafaz.mercury.model.event.SshCommandEnd;
 import it.skarafaz.mercury.model.event.SshCommandStart;
+import org.apache.commons.lang3.StringUtils;
 import org.greenrobot.eventbus.EventBus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
-public abstract class SshCommand extends Thread {
-    protected static final int TIMEOUT = 10000;
+public abstract class SshCommand implements Callable<SshCommandStatus> {
+    private static final int OUTPUT_LIMIT = 4096;
+    private static final long CLOSE_CHECK_INTERVAL = 1000;
     private static final Logger logger = LoggerFactory.getLogger(SshCommand.class);
     protected JSch jsch;
     protected Session session;
@@ -45,45 +51,133 @@ public abstract class SshCommand extends Thread {
     protected Boolean sudo;
     protected String cmd;
     protected Boolean confirm;
-
-    public SshCommand() {
-        this.jsch = new JSch();
-    }
+    protected Boolean capture;
+    protected SshOutputBuffer output;
+    protected boolean shell;
+    protected SocketOptions socketOptions;
+    protected Crypto crypto;
+    protected SshRetryPolicy retryPolicy = SshRetryPolicy.NONE;
+    private boolean silent;
+    private boolean channelFailed;
+    private boolean channelOpened;
+    private boolean authFailed;
+    private boolean sessionCreated;
+    private boolean sessionReused;
+    private boolean freshSession;
+    private int attempts;
+    private long elapsed;
 
     @Override
-    public void run() {
-        if(beforeExecute()) {
-            SshCommandStatus status = execute();
+    public SshCommandStatus call() {
+        SshCommandStatus status = SshCommandStatus.CANCELLED;
+        if (beforeExecute()) {
+            long start = System.currentTimeMillis();
+            while (true) {
+                attempts++;
+                status = execute();
+                if (!retryPolicy.shouldRetry(status, attempts) || !canRetry(status)) {
+                    break;
+                }
+
+                long backoff = retryPolicy.getBackoff(attempts);
+                logger.info("attempt {} failed with {}, retrying in {} ms", attempts, status, backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            elapsed = System.currentTimeMillis() - start;
+            logger.debug("finished with {} after {} attempts in {} ms", status, attempts, elapsed);
+
+            if (output != null) {
+                output.close();
+            }
             afterExecute(status);
         }
+        return status;
+    }
+
+    public void setConfirm(Boolean confirm) {
+        this.confirm = confirm;
+    }
+
+    public void setSilent(boolean silent) {
+        this.silent = silent;
+    }
+
+    protected boolean isSilent() {
+        return silent;
     }
 
     protected boolean beforeExecute() {
-        EventBus.getDefault().postSticky(new SshCommandStart());
+        if (!silent) {
+            EventBus.getDefault().postSticky(new SshCommandStart(output != null ? output.getId() : null));
+        }
         return true;
     }
 
     private SshCommandStatus execute() {
         SshCommandStatus status = SshCommandStatus.COMMAND_SENT;
+        channelFailed = false;
+        channelOpened = false;
+        freshSession = false;
 
         if (initConnection()) {
-            if (connect()) {
-                if (!send(formatCmd(cmd))) {
+            SshCircuitBreaker circuitBreaker = SshManager.getInstance().getCircuitBreaker();
+            if (!circuitBreaker.allow(host, port)) {
+                status = SshCommandStatus.HOST_UNAVAILABLE;
+            } else {
+                try {
+                    status = connectAndSend();
+                } finally {
+                    // a probe left unresolved by an unexpected error must not keep the host suspended
+                    circuitBreaker.release(host, port);
+                }
+            }
+        } else {
+            status = SshCommandStatus.CONNECTION_INIT_ERROR;
+        }
+
+        return status;
+    }
+
+    private SshCommandStatus connectAndSend() {
+        SshCommandStatus status = SshCommandStatus.COMMAND_SENT;
+        if (connect()) {
+            boolean sent = sendCommands();
+            boolean connected = true;
+            if (!sent && channelFailed && !channelOpened && sessionReused) {
+                // keepalives are only queued, a pooled session killed by a network change shows up here
+                logger.info("channel failed on a reused session, retrying on a fresh one");
+                disconnect(false);
+                channelFailed = false;
+                freshSession = true;
+                connected = connect();
+                if (connected) {
+                    sent = sendCommands();
+                }
+            }
+            if (connected) {
+                if (!sent) {
                     status = SshCommandStatus.EXECUTION_FAILED;
                 }
-                disconnect();
+                disconnect(!channelFailed);
             } else {
                 status = SshCommandStatus.CONNECTION_FAILED;
             }
         } else {
-            status = SshCommandStatus.CONNECTION_INIT_ERROR;
+            status = SshCommandStatus.CONNECTION_FAILED;
         }
 
         return status;
     }
 
     protected void afterExecute(SshCommandStatus status) {
-        EventBus.getDefault().postSticky(new SshCommandEnd(status));
+        if (!silent) {
+            EventBus.getDefault().postSticky(new SshCommandEnd(status, attempts, elapsed));
+        }
     }
 
     protected boolean initConnection() {
@@ -92,22 +186,118 @@ public abstract class SshCommand extends Thread {
 
     protected boolean connect() {
         boolean success = true;
+        authFailed = false;
+        sessionCreated = false;
+        sessionReused = false;
         try {
-            session = jsch.getSession(user, host, port);
-
-            session.setUserInfo(getUserInfo());
-            session.setConfig(getSessionConfig());
-            session.setPassword(password);
-
-            session.connect(TIMEOUT);
+            final SshSessionKey key = getSessionKey();
+            if (key != null) {
+                SshSessionPool.Factory factory = new SshSessionPool.Factory() {
+                    @Override
+                    public Session create() throws JSchException {
+                        sessionCreated = true;
+                        return createSession(key);
+                    }
+                };
+                SshSessionPool pool = SshManager.getInstance().getSessionPool();
+                // no leases to share forces a new session
+                session = freshSession ? pool.borrow(key, factory, 0) : pool.borrow(key, factory);
+                sessionReused = !sessionCreated;
+            } else {
+                session = createSession(new SshSessionKey(user, host, port, password, null));
+            }
+            SshManager.getInstance().getCircuitBreaker().onSuccess(host, port);
         } catch (JSchException e) {
-            logger.error(e.getMessage().replace("\n", " "));
+            SshManager.getInstance().getCircuitBreaker().onFailure(host, port, e);
+            logger.error(String.valueOf(e.getMessage()).replace("\n", " "));
+            authFailed = e.getMessage() != null && e.getMessage().startsWith("Auth ");
             success = false;
         }
         return success;
     }
 
-    protected boolean send(String cmd) {
+    static Properties getBastionConfig() {
+        // a bastion is shared by every target behind it, the crypto and socket options of one target do not apply
+        Properties config = new Properties();
+        config.put("PreferredAuthentications", "publickey,password");
+        config.put("MaxAuthTries", "1");
+        return config;
+    }
+
+    Session createSession(SshSessionKey key) throws JSchException {
+        return createSession(key, getSessionConfig(), socketOptions, isAuthMemoized());
+    }
+
+    Session createBastionSession(SshSessionKey jump) throws JSchException {
+        return createSession(jump, getBastionConfig(), null, true);
+    }
+
+    private Session createSession(SshSessionKey key, Properties config, SocketOptions options, boolean memoizable) throws JSchException {
+        Session session = jsch.getSession(key.getUser(), key.getHost(), key.getPort());
+
+        UserInfo userInfo = getUserInfo();
+        session.setUserInfo(userInfo);
+        session.setPassword(key.getPassword());
+
+        // the method that last succeeded with the host is tried first, when there is a choice at all
+        SshAuthMemo authMemo = SshManager.getInstance().getAuthMemo();
+        String methods = config.getProperty("PreferredAuthentications");
+        boolean memoized = memoizable && methods != null && methods.contains(",");
+        if (memoized) {
+            config.put("PreferredAuthentications", authMemo.order(key, methods));
+        }
+        session.setConfig(config);
+
+        SshLatencyTracker tracker = SshManager.getInstance().getLatencyTracker();
+        SshAdmissionLimiter limiter = SshManager.getInstance().getAdmissionLimiter();
+
+        int timeout = tracker.getTimeout(SshLatencyTracker.Operation.CONNECT, key.getHost(), key.getPort());
+        if (key.getJump() != null) {
+            session.setProxy(new SshJumpProxy(this, key.getJump()));
+        } else {
+            session.setSocketFactory(new SshSocketFactory(timeout, options));
+        }
+
+        // bursts to the same host queue here instead of being dropped by sshd
+        SshAdmissionLimiter.Permit permit = limiter.acquire(key.getHost(), key.getPort(), timeout);
+        SshAdmissionLimiter.Permit outer = null;
+        if (userInfo instanceof SshCommandUserInfo) {
+            // a bastion connects inside the handshake of its target, the target permit is restored afterwards
+            outer = ((SshCommandUserInfo) userInfo).getPermit();
+            ((SshCommandUserInfo) userInfo).setPermit(permit);
+        }
+        JSchException failure = null;
+        try {
+            long start = System.currentTimeMillis();
+            session.connect(timeout);
+            if (memoized) {
+                authMemo.remember(key);
+            }
+            // handshakes waiting for the user say nothing about the latency of the host
+            if (!(userInfo instanceof SshCommandUserInfo && ((SshCommandUserInfo) userInfo).hasPrompted())) {
+                tracker.record(SshLatencyTracker.Operation.CONNECT, key.getHost(), key.getPort(), System.currentTimeMillis() - start);
+            }
+        } catch (JSchException e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (userInfo instanceof SshCommandUserInfo) {
+                ((SshCommandUserInfo) userInfo).setPermit(outer);
+            }
+            limiter.release(permit, failure);
+        }
+        return session;
+    }
+
+    protected boolean sendCommands() {
+        return send(formatCmd(cmd), waitForExitStatus());
+    }
+
+    protected boolean send(String cmd, boolean wait) {
+        if (shell && getSessionKey() != null) {
+            return sendToShell(cmd, wait);
+        }
+
         logger.debug("sending command: {}", cmd);
 
         ChannelExec channel = null;
@@ -118,13 +308,22 @@ public abstract class SshCommand extends Thread {
             channel.setCommand(cmd);
             channel.setInputStream(null);
 
-            InputStream stdout = channel.getInputStream();
-            InputStream stderr = channel.getErrStream();
+            SshChannelSink stdout = new SshChannelSink(OUTPUT_LIMIT, output);
+            SshChannelSink stderr = new SshChannelSink(OUTPUT_LIMIT, output);
+            channel.setOutputStream(stdout);
+            channel.setErrStream(stderr);
 
-            channel.connect(TIMEOUT);
-            success = waitForChannelClosed(channel, stdout, stderr);
-        } catch (IOException | JSchException e) {
+            SshLatencyTracker tracker = SshManager.getInstance().getLatencyTracker();
+            long start = System.currentTimeMillis();
+            channel.connect(tracker.getTimeout(SshLatencyTracker.Operation.CHANNEL, host, port));
+            channelOpened = true;
+            tracker.record(SshLatencyTracker.Operation.CHANNEL, host, port, System.currentTimeMillis() - start);
+            if (wait) {
+                success = waitForChannelClosed(channel, stderr);
+            }
+        } catch (JSchException e) {
             logger.error(e.getMessage().replace("\n", " "));
+            channelFailed = true;
             success = false;
         } finally {
             if (channel != null) {
@@ -134,20 +333,116 @@ public abstract class SshCommand extends Thread {
         return success;
     }
 
-    protected boolean waitForChannelClosed(ChannelExec channel, InputStream stdout, InputStream stderr) {
-        return true;
+    private boolean sendToShell(String cmd, boolean wait) {
+        logger.debug("sending command to shell: {}", cmd);
+
+        SshShell shell = null;
+
+        boolean success = true;
+        try {
+            shell = SshManager.getInstance().getSessionPool().getShell(getSessionKey(), session, SshManager.getInstance().getLatencyTracker().getTimeout(SshLatencyTracker.Operation.CHANNEL, host, port));
+            channelOpened = true;
+            SshChannelSink sink = new SshChannelSink(OUTPUT_LIMIT, output);
+
+            // commands not waited for run in the background so that the shell is free for the next one
+            long timeout = SettingsManager.getInstance().getShellTimeout() * 1000L;
+            int exitStatus = shell.exec(wait ? cmd : cmd + " &", sink, timeout);
+            if (exitStatus != 0) {
+                logger.error(String.format("exit-status: %d - %s", exitStatus, sink.getContent().replace("\n", " ")));
+                success = false;
+            }
+        } catch (JSchException e) {
+            logger.error(e.getMessage().replace("\n", " "));
+            channelFailed = true;
+            success = false;
+        } catch (IOException e) {
+            logger.error(e.getMessage().replace("\n", " "));
+            if (shell != null) {
+                shell.close();
+            }
+            success = false;
+        }
+        return success;
     }
 
-    protected void disconnect() {
-        session.disconnect();
+    protected boolean waitForExitStatus() {
+        return false;
+    }
+
+    private boolean waitForChannelClosed(ChannelExec channel, SshChannelSink stderr) {
+        boolean success = true;
+        try {
+            // jsch closes the stderr sink when the channel is closed, after the exit status has been received
+            while (!stderr.awaitClose(CLOSE_CHECK_INTERVAL)) {
+                if (channel.isClosed()) {
+                    break;
+                }
+            }
+            if (channel.getExitStatus() != 0) {
+                logger.error(String.format("exit-status: %d - %s", channel.getExitStatus(), stderr.getContent().replace("\n", " ")));
+                success = false;
+            }
+        } catch (InterruptedException e) {
+            logger.error(e.getMessage().replace("\n", " "));
+            Thread.currentThread().interrupt();
+            success = false;
+        }
+        return success;
+    }
+
+    protected void disconnect(boolean reusable) {
+        SshSessionKey key = getSessionKey();
+        if (key == null) {
+            session.disconnect();
+        } else if (reusable) {
+            SshManager.getInstance().getSessionPool().release(key, session);
+        } else {
+            SshManager.getInstance().getSessionPool().invalidate(key, session);
+        }
+    }
+
+    protected SshSessionKey getSessionKey() {
+        return null;
     }
 
     protected UserInfo getUserInfo() {
         return null;
     }
 
+    protected boolean hasAuthFailed() {
+        return authFailed;
+    }
+
+    protected boolean canRetry(SshCommandStatus status) {
+        // rejected credentials fail the same way again and may lock the account
+        return !(status == SshCommandStatus.CONNECTION_FAILED && hasAuthFailed());
+    }
+
+    protected boolean isAuthMemoized() {
+        return false;
+    }
+
     protected Properties getSessionConfig() {
-        return new Properties();
+        Properties config = new Properties();
+        if (crypto != null) {
+            if (crypto.getCiphers() != null) {
+                config.put("cipher.s2c", StringUtils.join(crypto.getCiphers(), ","));
+                config.put("cipher.c2s", StringUtils.join(crypto.getCiphers(), ","));
+            }
+            if (crypto.getKex() != null) {
+                config.put("kex", StringUtils.join(crypto.getKex(), ","));
+            }
+            if (crypto.getMacs() != null) {
+                config.put("mac.s2c", StringUtils.join(crypto.getMacs(), ","));
+                config.put("mac.c2s", StringUtils.join(crypto.getMacs(), ","));
+            }
+            if (crypto.getCompression() != null && crypto.getCompression() > 0) {
+                config.put("compression.s2c", "zlib@openssh.com,zlib,none");
+                config.put("compression.c2s", "zlib@openssh.com,zlib,none");
+                config.put("compression_level", String.valueOf(crypto.getCompression()));
+            }
+        }
+        return config;
     }
 
     protected String formatCmd(String cmd) {
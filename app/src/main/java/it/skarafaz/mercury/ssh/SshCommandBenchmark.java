@@ -0,0 +1,198 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.UserInfo;
+import it.skarafaz.mercury.manager.SshManager;
+import it.skarafaz.mercury.model.config.Crypto;
+import it.skarafaz.mercury.model.config.Server;
+import it.skarafaz.mercury.model.event.SshBenchmarkEnd;
+import org.greenrobot.eventbus.EventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class SshCommandBenchmark extends SshCommand {
+    public static final int SAMPLE_SIZE = 1024 * 1024;
+    // base64 makes the random sample about as compressible as text output
+    private static final String SAMPLE_CMD = String.format("head -c %d /dev/urandom | base64", SAMPLE_SIZE * 3 / 4);
+    private static final Map<String, Crypto> CANDIDATES = new LinkedHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(SshCommandBenchmark.class);
+    private String name;
+    private String jump;
+    private List<SshBenchmarkResult> results;
+
+    static {
+        CANDIDATES.put("aes128-ctr, hmac-sha1, ecdh", newCrypto("aes128-ctr", "hmac-sha1", "ecdh-sha2-nistp256", 0));
+        CANDIDATES.put("aes256-ctr, hmac-sha2-256, ecdh", newCrypto("aes256-ctr", "hmac-sha2-256", "ecdh-sha2-nistp256", 0));
+        CANDIDATES.put("aes128-cbc, hmac-sha1, dh-group14", newCrypto("aes128-cbc", "hmac-sha1", "diffie-hellman-group14-sha1", 0));
+        CANDIDATES.put("aes128-ctr, hmac-sha1, ecdh, zlib 1", newCrypto("aes128-ctr", "hmac-sha1", "ecdh-sha2-nistp256", 1));
+        CANDIDATES.put("aes128-ctr, hmac-sha1, ecdh, zlib 6", newCrypto("aes128-ctr", "hmac-sha1", "ecdh-sha2-nistp256", 6));
+    }
+
+    public SshCommandBenchmark(Server server) {
+        super();
+
+        this.name = server.getName();
+        this.host = server.getHost();
+        this.port = server.getPort();
+        this.user = server.getUser();
+        this.password = server.getPassword();
+        this.socketOptions = server.getSocket();
+        this.jump = server.getJump();
+    }
+
+    private static Crypto newCrypto(String cipher, String mac, String kex, int compression) {
+        Crypto crypto = new Crypto();
+        crypto.setCiphers(Collections.singletonList(cipher));
+        crypto.setMacs(Collections.singletonList(mac));
+        crypto.setKex(Collections.singletonList(kex));
+        crypto.setCompression(compression);
+        return crypto;
+    }
+
+    @Override
+    protected boolean initConnection() {
+        boolean success = true;
+        try {
+            jsch = SshManager.getInstance().getJSch();
+        } catch (IOException | JSchException e) {
+            logger.error(e.getMessage().replace("\n", " "));
+            success = false;
+        }
+        return success;
+    }
+
+    @Override
+    protected boolean connect() {
+        // every candidate gets its own session, the first handshake resolves the circuit breaker probe
+        return true;
+    }
+
+    @Override
+    protected boolean sendCommands() {
+        SshSessionKey key = new SshSessionKey(user, host, port, password, jump != null ? SshSessionKey.parse(jump) : null);
+        SshCircuitBreaker circuitBreaker = SshManager.getInstance().getCircuitBreaker();
+        results = new ArrayList<>();
+        for (Map.Entry<String, Crypto> candidate : CANDIDATES.entrySet()) {
+            boolean first = results.isEmpty();
+            SshBenchmarkResult result = new SshBenchmarkResult(candidate.getKey(), candidate.getValue());
+            results.add(result);
+            crypto = candidate.getValue();
+            session = null;
+            try {
+                long start = System.currentTimeMillis();
+                session = createSession(key);
+                key = rememberPassword(key);
+                if (first) {
+                    circuitBreaker.onSuccess(host, port);
+                }
+                if (hasPrompted(session)) {
+                    // time spent on dialogs is not handshake time, repeat it now that the answers are known
+                    session.disconnect();
+                    start = System.currentTimeMillis();
+                    session = createSession(key);
+                    if (hasPrompted(session)) {
+                        logger.warn("benchmark {} on {} keeps prompting, discarded", result.getName(), host);
+                        continue;
+                    }
+                }
+                long handshake = System.currentTimeMillis() - start;
+
+                start = System.currentTimeMillis();
+                if (send(SAMPLE_CMD, true)) {
+                    result.setTimes(handshake, System.currentTimeMillis() - start);
+                }
+            } catch (JSchException e) {
+                logger.error(e.getMessage().replace("\n", " "));
+                if (first && session == null) {
+                    circuitBreaker.onFailure(host, port, e);
+                }
+            } finally {
+                if (session != null) {
+                    session.disconnect();
+                }
+            }
+            logger.info("benchmark {} on {}: {}", result.getName(), host, result.isFailed() ? "failed" : String.format("handshake %d ms, transfer %d ms", result.getHandshake(), result.getTransfer()));
+        }
+
+        for (SshBenchmarkResult result : results) {
+            if (!result.isFailed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasPrompted(Session session) {
+        UserInfo userInfo = session.getUserInfo();
+        return userInfo instanceof SshCommandUserInfo && ((SshCommandUserInfo) userInfo).hasPrompted();
+    }
+
+    private SshSessionKey rememberPassword(SshSessionKey key) {
+        // the password typed for the first candidate is reused for the others
+        UserInfo userInfo = session.getUserInfo();
+        if (key.getPassword() == null && userInfo != null && userInfo.getPassword() != null) {
+            return new SshSessionKey(key.getUser(), key.getHost(), key.getPort(), userInfo.getPassword(), key.getJump());
+        }
+        return key;
+    }
+
+    @Override
+    protected void disconnect(boolean reusable) {
+    }
+
+    @Override
+    protected void afterExecute(SshCommandStatus status) {
+        if (results != null) {
+            SshBenchmarkResult fastest = null;
+            for (SshBenchmarkResult result : results) {
+                if (!result.isFailed() && (fastest == null || result.getTotal() < fastest.getTotal())) {
+                    fastest = result;
+                }
+            }
+            EventBus.getDefault().postSticky(new SshBenchmarkEnd(name, results, fastest));
+        }
+        super.afterExecute(status);
+    }
+
+    @Override
+    protected UserInfo getUserInfo() {
+        return new SshCommandUserInfo();
+    }
+
+    @Override
+    protected Properties getSessionConfig() {
+        Properties config = super.getSessionConfig();
+        config.put("PreferredAuthentications", "publickey,password");
+        config.put("MaxAuthTries", "1");
+        return config;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SshCommandExecutor {
+    private static final int MAX_WORKERS = 8;
+    private static final int MAX_QUEUE_SIZE = 32;
+    private static final long KEEP_ALIVE = 30 * 1000;
+    private static final long AGING_INTERVAL = 10 * 1000;
+    private static final Logger logger = LoggerFactory.getLogger(SshCommandExecutor.class);
+    private static SshCommandExecutor instance;
+    private ThreadPoolExecutor executor;
+    private Map<SshCommandPriority, Deque<SshCommandTask>> lanes;
+    private Map<SshCommandPriority, Integer> active;
+    private int queued;
+    private volatile SshCommandRejectionPolicy rejectionPolicy;
+
+    private SshCommandExecutor() {
+        rejectionPolicy = SshCommandRejectionPolicy.ABORT;
+        lanes = new EnumMap<>(SshCommandPriority.class);
+        active = new EnumMap<>(SshCommandPriority.class);
+        for (SshCommandPriority priority : SshCommandPriority.values()) {
+            lanes.put(priority, new ArrayDeque<SshCommandTask>());
+            active.put(priority, 0);
+        }
+        // tasks are handed to the pool only when a worker is free, queueing happens in the lanes
+        executor = new ThreadPoolExecutor(MAX_WORKERS, MAX_WORKERS, KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized SshCommandExecutor getInstance() {
+        if (instance == null) {
+            instance = new SshCommandExecutor();
+        }
+        return instance;
+    }
+
+    public SshCommandTask submit(SshCommand command) {
+        return submit(command, SshCommandPriority.NORMAL, null);
+    }
+
+    public SshCommandTask submit(SshCommand command, SshCommandPriority priority) {
+        return submit(command, priority, null);
+    }
+
+    public SshCommandTask submit(SshCommand command, SshCommandTask.Listener listener) {
+        return submit(command, SshCommandPriority.NORMAL, listener);
+    }
+
+    public SshCommandTask submit(SshCommand command, SshCommandPriority priority, SshCommandTask.Listener listener) {
+        SshCommandTask task = new SshCommandTask(command, priority, listener);
+        SshCommandTask rejected = null;
+        synchronized (this) {
+            if (queued >= MAX_QUEUE_SIZE) {
+                rejected = rejectionPolicy == SshCommandRejectionPolicy.DISCARD_OLDEST ? pollLowest(priority) : null;
+                if (rejected == null) {
+                    rejected = task;
+                }
+            }
+            if (rejected != task) {
+                lanes.get(priority).add(task);
+                queued++;
+            }
+            dispatch();
+        }
+        if (rejected != null) {
+            logger.warn(rejected == task ? "command queue full, rejecting command" : "command queue full, discarding oldest command");
+            rejected.reject();
+        }
+        logger.debug("{} command submitted, active: {}, queued: {}", priority, getActiveCount(), getQueueSize());
+        return task;
+    }
+
+    public synchronized int getActiveCount() {
+        int count = 0;
+        for (int lane : active.values()) {
+            count += lane;
+        }
+        return count;
+    }
+
+    public synchronized int getQueueSize() {
+        return queued;
+    }
+
+    public SshCommandRejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public void setRejectionPolicy(SshCommandRejectionPolicy rejectionPolicy) {
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    private void dispatch() {
+        SshCommandTask task;
+        while ((task = pollNext()) != null) {
+            queued--;
+            active.put(task.getPriority(), active.get(task.getPriority()) + 1);
+            executor.execute(new Worker(task));
+        }
+    }
+
+    private SshCommandTask pollNext() {
+        int total = getActiveCount();
+        if (total >= MAX_WORKERS) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        SshCommandPriority next = null;
+        long nextRank = Long.MAX_VALUE;
+        for (SshCommandPriority priority : SshCommandPriority.values()) {
+            SshCommandTask head = lanes.get(priority).peek();
+            if (head == null || active.get(priority) >= priority.maxActive()) {
+                continue;
+            }
+            // the last worker is kept for interactive commands
+            if (priority != SshCommandPriority.INTERACTIVE && total >= MAX_WORKERS - 1) {
+                continue;
+            }
+            // waiting tasks age towards the interactive lane so that no lane starves
+            long rank = Math.max(0, priority.ordinal() - (now - head.getSubmitted()) / AGING_INTERVAL);
+            if (rank < nextRank) {
+                next = priority;
+                nextRank = rank;
+            }
+        }
+        return next != null ? lanes.get(next).poll() : null;
+    }
+
+    private SshCommandTask pollLowest(SshCommandPriority limit) {
+        // a command never pushes out one more urgent than itself
+        for (int i = SshCommandPriority.values().length - 1; i >= limit.ordinal(); i--) {
+            SshCommandTask oldest = lanes.get(SshCommandPriority.values()[i]).poll();
+            if (oldest != null) {
+                queued--;
+                return oldest;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void finished(SshCommandTask task) {
+        active.put(task.getPriority(), active.get(task.getPriority()) - 1);
+        dispatch();
+    }
+
+    private class Worker implements Runnable {
+        private final SshCommandTask task;
+
+        private Worker(SshCommandTask task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                finished(task);
+            }
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, String.format("ssh-command-%d", count.incrementAndGet()));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import it.skarafaz.mercury.MercuryApplication;
+import it.skarafaz.mercury.R;
+import it.skarafaz.mercury.model.config.Command;
+import it.skarafaz.mercury.model.config.Server;
+import it.skarafaz.mercury.model.event.SshCommandGroupEnd;
+import it.skarafaz.mercury.model.event.SshCommandGroupStart;
+import org.greenrobot.eventbus.EventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+public class SshCommandGroup implements SshCommandTask.Listener {
+    private static final Logger logger = LoggerFactory.getLogger(SshCommandGroup.class);
+    private String group;
+    private String commandName;
+    private int parallelism;
+    private Queue<SshCommandRegular> pending;
+    private Map<SshCommand, Server> targets;
+    private Map<SshCommand, Server> running;
+    private Map<Server, SshCommandStatus> results;
+    private long start;
+
+    public SshCommandGroup(String group, String commandName, List<Server> servers, int parallelism) {
+        this.group = group;
+        this.commandName = commandName;
+        this.parallelism = Math.max(1, parallelism);
+        this.pending = new LinkedList<>();
+        this.targets = new HashMap<>();
+        this.running = new HashMap<>();
+        this.results = new LinkedHashMap<>();
+
+        for (Server server : servers) {
+            Command command = findCommand(server, commandName);
+            if (command != null) {
+                SshCommandRegular sshCommand = new SshCommandRegular(command);
+                sshCommand.setSilent(true);
+                sshCommand.setConfirm(false);
+                pending.add(sshCommand);
+                targets.put(sshCommand, server);
+                results.put(server, null);
+            } else {
+                logger.debug("server {} has no command named {}, skipping", server.getName(), commandName);
+            }
+        }
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    public void start() {
+        // prompts are answered all together before any command runs, so that they never stall the workers
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                String message = MercuryApplication.getContext().getString(R.string.confirm_group_exec, commandName, size(), group);
+                if (new SshPreflight(message, pending).collect()) {
+                    launch();
+                } else {
+                    logger.info("run on group {} cancelled", group);
+                }
+            }
+        }, "ssh-group-preflight");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void launch() {
+        logger.info("running command on {} servers of group {}", size(), group);
+        start = System.currentTimeMillis();
+        EventBus.getDefault().postSticky(new SshCommandGroupStart(size()));
+
+        if (pending.isEmpty()) {
+            finish();
+            return;
+        }
+        for (int i = 0; i < parallelism; i++) {
+            submitNext();
+        }
+    }
+
+    @Override
+    public void onDone(SshCommand command, SshCommandStatus status) {
+        boolean finished;
+        synchronized (this) {
+            Server server = running.remove(command);
+            results.put(server, status);
+            logger.info("group {}: {} - {}", group, server.getName(), status);
+            finished = pending.isEmpty() && running.isEmpty();
+        }
+        if (finished) {
+            finish();
+        } else {
+            submitNext();
+        }
+    }
+
+    private void submitNext() {
+        SshCommandRegular sshCommand;
+        synchronized (this) {
+            sshCommand = pending.poll();
+            if (sshCommand == null) {
+                return;
+            }
+            running.put(sshCommand, targets.get(sshCommand));
+        }
+        SshCommandExecutor.getInstance().submit(sshCommand, this);
+    }
+
+    private void finish() {
+        EventBus.getDefault().postSticky(new SshCommandGroupEnd(group, new LinkedHashMap<>(results), System.currentTimeMillis() - start));
+    }
+
+    private Command findCommand(Server server, String commandName) {
+        for (Command command : server.getCommands()) {
+            if (command.getName().equals(commandName)) {
+                return command;
+            }
+        }
+        return null;
+    }
+}
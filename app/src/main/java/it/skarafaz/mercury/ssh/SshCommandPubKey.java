@@ -20,22 +20,14 @@
 
 package it.skarafaz.mercury.ssh;
 
-import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.UserInfo;
 import it.skarafaz.mercury.model.event.SshCommandPubKeyInput;
 import it.skarafaz.mercury.manager.SshManager;
-import org.apache.commons.lang3.StringUtils;
-import org.greenrobot.eventbus.EventBus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
 
 public class SshCommandPubKey extends SshCommand {
@@ -48,10 +40,7 @@ public class SshCommandPubKey extends SshCommand {
 
     @Override
     protected boolean beforeExecute() {
-        SshCommandDrop<String> drop = new SshCommandDrop<>();
-        EventBus.getDefault().postSticky(new SshCommandPubKeyInput(drop));
-
-        String input = drop.take();
+        String input = SshPromptBroker.getInstance().ask(new SshCommandPubKeyInput(), null);
         if (input == null) {
             return false;
         }
@@ -61,22 +50,18 @@ public class SshCommandPubKey extends SshCommand {
     }
 
     private void setHostPortUser(String input) {
-        String[] sInput = input.split("@");
-        String left = sInput[0];
-        String right = sInput[1];
-
-        String[] sRight = right.split(":");
+        SshSessionKey key = SshSessionKey.parse(input);
 
-        this.host = sRight[0];
-        this.port = sRight.length > 1 ? Integer.valueOf(sRight[1]) : 22;
-        this.user = left;
+        this.host = key.getHost();
+        this.port = key.getPort();
+        this.user = key.getUser();
     }
 
     @Override
     protected boolean initConnection() {
         boolean success = true;
         try {
-            jsch.setKnownHosts(SshManager.getInstance().getKnownHosts().getAbsolutePath());
+            jsch = SshManager.getInstance().getJSch();
             pubKey = SshManager.getInstance().getPublicKeyContent();
         } catch (IOException | JSchException e) {
             logger.error(e.getMessage().replace("\n", " "));
@@ -86,45 +71,8 @@ public class SshCommandPubKey extends SshCommand {
     }
 
     @Override
-    protected boolean waitForChannelClosed(ChannelExec channel, InputStream stdout, InputStream stderr) {
-        boolean success = true;
-        try {
-            byte[] tmp = new byte[1024];
-            while (true) {
-                while (stdout.available() > 0) {
-                    int i = stdout.read(tmp, 0, 1024);
-                    if (i < 0) {
-                        break;
-                    }
-                }
-                if (channel.isClosed()) {
-                    if (stdout.available() > 0) {
-                        continue;
-                    }
-                    break;
-                }
-                try {
-                    Thread.sleep(1000);
-                } catch (Exception ee) {
-                    // ignore
-                }
-            }
-            if (channel.getExitStatus() != 0) {
-                BufferedReader reader = null;
-                try {
-                    reader = new BufferedReader(new InputStreamReader(stderr));
-                    logger.error(String.format("exit-status: %d - %s", channel.getExitStatus(), read(reader)));
-                } finally {
-                    if (reader != null) {
-                        reader.close();
-                    }
-                }
-                success = false;
-            }
-        } catch (IOException e) {
-            logger.error(e.getMessage().replace("\n", " "));
-        }
-        return success;
+    protected boolean waitForExitStatus() {
+        return true;
     }
 
     @Override
@@ -149,13 +97,4 @@ public class SshCommandPubKey extends SshCommand {
         sb.append("chmod 600 ~/.ssh/authorized_keys");
         return sb.toString();
     }
-
-    private String read(BufferedReader reader) throws IOException {
-        String aux;
-        List<String> lines = new ArrayList<>();
-        while ((aux = reader.readLine()) != null) {
-            lines.add(aux);
-        }
-        return StringUtils.join(lines, " ");
-    }
 }
@@ -28,15 +28,22 @@ import it.skarafaz.mercury.model.event.SshCommandConfirm;
 import it.skarafaz.mercury.model.event.SshCommandPassword;
 import it.skarafaz.mercury.manager.SshManager;
 import it.skarafaz.mercury.model.config.Command;
-import org.greenrobot.eventbus.EventBus;
+import it.skarafaz.mercury.model.config.Step;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class SshCommandRegular extends SshCommand {
     private static final Logger logger = LoggerFactory.getLogger(SshCommandRegular.class);
+    private List<Step> steps;
+    private int nextStep;
+    private String jump;
+    private boolean sudoPrompted;
 
     public SshCommandRegular(Command command) {
         super();
@@ -47,42 +54,80 @@ public class SshCommandRegular extends SshCommand {
         this.password = command.getServer().getPassword();
         this.sudoPath = command.getServer().getSudoPath();
         this.nohupPath = command.getServer().getNohupPath();
+        this.shell = command.getServer().getShell();
+        this.socketOptions = command.getServer().getSocket();
+        this.jump = command.getServer().getJump();
+        this.crypto = command.getServer().getCrypto();
         this.sudo = command.getSudo();
         this.cmd = command.getCmd();
         this.confirm = command.getConfirm();
+        this.capture = command.getCapture();
+        this.steps = command.getSteps();
+        this.retryPolicy = new SshRetryPolicy(command.getRetry());
     }
 
     @Override
     protected boolean beforeExecute() {
         if (confirm) {
-            SshCommandDrop<Boolean> drop = new SshCommandDrop<>();
-            EventBus.getDefault().postSticky(new SshCommandConfirm(cmd, drop));
-
-            if (!drop.take()) {
+            if (!SshPromptBroker.getInstance().ask(new SshCommandConfirm(getLabel()), false)) {
                 return false;
             }
         }
 
-        if (sudo && password == null) {
-            SshCommandDrop<String> drop = new SshCommandDrop<>();
-            String message = MercuryApplication.getContext().getString(R.string.type_sudo_password, formatServerLabel());
-            EventBus.getDefault().postSticky(new SshCommandPassword(message, drop));
-
-            password = drop.take();
+        if (needsSudo() && password == null) {
+            SshSudoCache sudoCache = SshManager.getInstance().getSudoCache();
+            password = sudoCache.get(user, host, port);
             if (password == null) {
-                return false;
+                String message = MercuryApplication.getContext().getString(R.string.type_sudo_password, formatServerLabel());
+                password = SshPromptBroker.getInstance().ask(new SshCommandPassword(message), null);
+                if (password == null) {
+                    return false;
+                }
+                sudoCache.put(user, host, port, password);
             }
+            sudoPrompted = true;
+        }
+
+        if (capture && !isSilent()) {
+            output = SshManager.getInstance().createOutputBuffer(getLabel());
         }
 
         return super.beforeExecute();
     }
 
+    @Override
+    protected void afterExecute(SshCommandStatus status) {
+        // a wrong password would keep failing until it expires, without a stored one it is also the login password
+        if (sudoPrompted && (status == SshCommandStatus.EXECUTION_FAILED || status == SshCommandStatus.CONNECTION_FAILED && hasAuthFailed())) {
+            SshManager.getInstance().getSudoCache().remove(user, host, port);
+        }
+        super.afterExecute(status);
+    }
+
+    @Override
+    protected boolean canRetry(SshCommandStatus status) {
+        // steps that failed without aborting are not retried on their own
+        return super.canRetry(status) && (steps.isEmpty() || nextStep < steps.size());
+    }
+
+    String getSudoLabel() {
+        if (needsSudo() && password == null && SshManager.getInstance().getSudoCache().get(user, host, port) == null) {
+            return formatServerLabel();
+        }
+        return null;
+    }
+
+    void setSudoPassword(String password) {
+        this.password = password;
+        sudoPrompted = true;
+        SshManager.getInstance().getSudoCache().put(user, host, port, password);
+    }
+
     @Override
     protected boolean initConnection() {
         boolean success = true;
         try {
-            jsch.setKnownHosts(SshManager.getInstance().getKnownHosts().getAbsolutePath());
-            jsch.addIdentity(SshManager.getInstance().getPrivateKey().getAbsolutePath());
+            jsch = SshManager.getInstance().getJSch();
         } catch (IOException | JSchException e) {
             logger.error(e.getMessage().replace("\n", " "));
             success = false;
@@ -90,11 +135,58 @@ public class SshCommandRegular extends SshCommand {
         return success;
     }
 
+    @Override
+    protected boolean sendCommands() {
+        if (steps.isEmpty()) {
+            return super.sendCommands();
+        }
+
+        // a retry resumes from the step that aborted the previous attempt, the ones before it are not run again
+        boolean success = true;
+        boolean aborted = false;
+        for (int i = nextStep; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (aborted) {
+                logger.info("step {}/{} skipped: {}", i + 1, steps.size(), step.getCmd());
+                continue;
+            }
+
+            long start = System.currentTimeMillis();
+            boolean stepSuccess = send(formatCmd(step.getCmd(), step.getSudo()), true);
+            long elapsed = System.currentTimeMillis() - start;
+            logger.info("step {}/{} {} in {} ms: {}", i + 1, steps.size(), stepSuccess ? "succeeded" : "failed", elapsed, step.getCmd());
+
+            if (!stepSuccess) {
+                success = false;
+                aborted = !step.getContinueOnError();
+            }
+            if (!aborted) {
+                nextStep = i + 1;
+            }
+        }
+        return success;
+    }
+
+    @Override
+    protected boolean waitForExitStatus() {
+        return output != null;
+    }
+
+    @Override
+    protected SshSessionKey getSessionKey() {
+        return new SshSessionKey(user, host, port, password, jump != null ? SshSessionKey.parse(jump) : null);
+    }
+
     @Override
     protected UserInfo getUserInfo() {
         return new SshCommandUserInfo();
     }
 
+    @Override
+    protected boolean isAuthMemoized() {
+        return true;
+    }
+
     @Override
     protected Properties getSessionConfig() {
         Properties config = super.getSessionConfig();
@@ -105,6 +197,18 @@ public class SshCommandRegular extends SshCommand {
 
     @Override
     protected String formatCmd(String cmd) {
+        return formatCmd(cmd, sudo);
+    }
+
+    private String formatCmd(String cmd, boolean sudo) {
+        if (output != null) {
+            // captured commands keep the channel open until they exit, no need to detach them
+            if (sudo) {
+                return String.format("echo %s | %s -S -p '' %s", password, sudoPath, cmd);
+            } else {
+                return cmd;
+            }
+        }
         if (sudo) {
             return String.format("echo %s | %s -S -p '' %s %s > /dev/null 2>&1", password, sudoPath, nohupPath, cmd);
         } else {
@@ -112,6 +216,29 @@ public class SshCommandRegular extends SshCommand {
         }
     }
 
+    private boolean needsSudo() {
+        if (steps.isEmpty()) {
+            return sudo;
+        }
+        for (Step step : steps) {
+            if (step.getSudo()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getLabel() {
+        if (steps.isEmpty()) {
+            return cmd;
+        }
+        List<String> cmds = new ArrayList<>();
+        for (Step step : steps) {
+            cmds.add(step.getCmd());
+        }
+        return StringUtils.join(cmds, "\n");
+    }
+
     private String formatServerLabel() {
         StringBuilder sb = new StringBuilder(String.format("%s@%s", user, host));
         if (port != 22) {
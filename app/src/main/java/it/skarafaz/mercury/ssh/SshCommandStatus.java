@@ -25,8 +25,11 @@ import it.skarafaz.mercury.R;
 public enum SshCommandStatus {
     CONNECTION_INIT_ERROR(R.string.connection_init_error),
     CONNECTION_FAILED(R.string.connection_failed),
+    HOST_UNAVAILABLE(R.string.host_unavailable),
     EXECUTION_FAILED(R.string.execution_failed),
-    COMMAND_SENT(R.string.command_sent);
+    COMMAND_SENT(R.string.command_sent),
+    CANCELLED(R.string.command_cancelled),
+    QUEUE_FULL(R.string.command_queue_full);
 
     private int message;
 
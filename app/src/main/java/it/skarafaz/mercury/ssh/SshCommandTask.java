@@ -0,0 +1,76 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+public class SshCommandTask extends FutureTask<SshCommandStatus> {
+    private SshCommand command;
+    private SshCommandPriority priority;
+    private Listener listener;
+    private long submitted;
+
+    public SshCommandTask(SshCommand command, SshCommandPriority priority, Listener listener) {
+        super(command);
+        this.command = command;
+        this.priority = priority;
+        this.listener = listener;
+        this.submitted = System.currentTimeMillis();
+    }
+
+    public SshCommand getCommand() {
+        return command;
+    }
+
+    public SshCommandPriority getPriority() {
+        return priority;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    @Override
+    protected void done() {
+        if (listener != null) {
+            SshCommandStatus status;
+            try {
+                status = get();
+            } catch (CancellationException e) {
+                status = SshCommandStatus.CANCELLED;
+            } catch (InterruptedException | ExecutionException e) {
+                status = SshCommandStatus.EXECUTION_FAILED;
+            }
+            listener.onDone(command, status);
+        }
+    }
+
+    void reject() {
+        command.afterExecute(SshCommandStatus.QUEUE_FULL);
+        set(SshCommandStatus.QUEUE_FULL);
+    }
+
+    public interface Listener {
+        void onDone(SshCommand command, SshCommandStatus status);
+    }
+}
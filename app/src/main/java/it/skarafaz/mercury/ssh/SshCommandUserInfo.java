@@ -23,17 +23,20 @@ package it.skarafaz.mercury.ssh;
 import com.jcraft.jsch.UserInfo;
 import it.skarafaz.mercury.MercuryApplication;
 import it.skarafaz.mercury.R;
+import it.skarafaz.mercury.manager.SshManager;
 import it.skarafaz.mercury.model.event.SshCommandMessage;
 import it.skarafaz.mercury.model.event.SshCommandPassword;
 import it.skarafaz.mercury.model.event.SshCommandYesNo;
-import org.greenrobot.eventbus.EventBus;
 
 public class SshCommandUserInfo implements UserInfo {
     private String password;
+    private String passphrase;
+    private boolean prompted;
+    private SshAdmissionLimiter.Permit permit;
 
     @Override
     public String getPassphrase() {
-        return null;
+        return passphrase;
     }
 
     @Override
@@ -43,29 +46,48 @@ public class SshCommandUserInfo implements UserInfo {
 
     @Override
     public boolean promptPassword(String message) {
-        SshCommandDrop<String> drop = new SshCommandDrop<>();
+        onPrompt();
         message = String.format(MercuryApplication.getContext().getString(R.string.type_login_password), message.toLowerCase());
-        EventBus.getDefault().postSticky(new SshCommandPassword(message, drop));
-        password = drop.take();
+        password = SshPromptBroker.getInstance().ask(new SshCommandPassword(message), null);
         return password != null;
     }
 
     @Override
     public boolean promptPassphrase(String message) {
-        return false;
+        onPrompt();
+        message = MercuryApplication.getContext().getString(R.string.type_key_passphrase);
+        passphrase = SshPromptBroker.getInstance().ask(new SshCommandPassword(message), null);
+        return passphrase != null;
     }
 
     @Override
     public boolean promptYesNo(String message) {
-        SshCommandDrop<Boolean> drop = new SshCommandDrop<>();
-        EventBus.getDefault().postSticky(new SshCommandYesNo(message, drop));
-        return drop.take();
+        onPrompt();
+        return SshPromptBroker.getInstance().ask(new SshCommandYesNo(message), false);
     }
 
     @Override
     public void showMessage(String message) {
-        SshCommandDrop<Boolean> drop = new SshCommandDrop<>();
-        EventBus.getDefault().postSticky(new SshCommandMessage(message, drop));
-        drop.take();
+        onPrompt();
+        SshPromptBroker.getInstance().ask(new SshCommandMessage(message), true);
+    }
+
+    public boolean hasPrompted() {
+        return prompted;
+    }
+
+    public SshAdmissionLimiter.Permit getPermit() {
+        return permit;
+    }
+
+    public void setPermit(SshAdmissionLimiter.Permit permit) {
+        this.permit = permit;
+    }
+
+    private void onPrompt() {
+        prompted = true;
+        if (permit != null) {
+            SshManager.getInstance().getAdmissionLimiter().suspend(permit);
+        }
     }
 }
@@ -20,31 +20,48 @@
 
 package it.skarafaz.mercury.ssh;
 
+import android.content.Intent;
 import android.support.annotation.NonNull;
 import android.text.InputType;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 import com.afollestad.materialdialogs.DialogAction;
 import com.afollestad.materialdialogs.MaterialDialog;
 import it.skarafaz.mercury.MercuryApplication;
 import it.skarafaz.mercury.R;
 import it.skarafaz.mercury.activity.MercuryActivity;
+import it.skarafaz.mercury.activity.OutputActivity;
+import it.skarafaz.mercury.model.config.Server;
 import it.skarafaz.mercury.model.event.*;
 import org.apache.commons.lang3.StringUtils;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @SuppressWarnings("unused")
 public class SshEventSubscriber {
     private MercuryActivity activity;
+    private Map<Long, MaterialDialog> dialogs;
 
     public SshEventSubscriber(MercuryActivity activity) {
         this.activity = activity;
+        this.dialogs = new HashMap<>();
     }
 
-    @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
+    @Subscribe(threadMode = ThreadMode.MAIN)
     public void onSshCommandConfirm(final SshCommandConfirm event) {
-        new MaterialDialog.Builder(activity)
+        if (isShowing(event)) {
+            return;
+        }
+        MaterialDialog dialog = new MaterialDialog.Builder(activity)
                 .title(R.string.confirm_exec)
                 .content(event.getCmd())
                 .positiveText(R.string.ok)
@@ -53,39 +70,109 @@ public class SshEventSubscriber {
                 .onPositive(new MaterialDialog.SingleButtonCallback() {
                     @Override
                     public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
-                        event.getDrop().put(true);
+                        event.getPrompt().answer(true);
                     }
 
                 })
                 .onNegative(new MaterialDialog.SingleButtonCallback() {
                     @Override
                     public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
-                        event.getDrop().put(false);
+                        event.getPrompt().answer(false);
                     }
                 })
                 .show();
-
-        EventBus.getDefault().removeStickyEvent(event);
+        dialogs.put(event.getPrompt().getId(), dialog);
     }
 
     @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
     public void onSshCommandStart(SshCommandStart event) {
-        MercuryApplication.showProgressDialog(activity.getSupportFragmentManager(), activity.getString(R.string.sending_command));
+        if (event.getOutputId() != null) {
+            Intent intent = new Intent(activity, OutputActivity.class);
+            intent.putExtra(OutputActivity.OUTPUT_ID_EXTRA, event.getOutputId().intValue());
+            activity.startActivity(intent);
+        } else {
+            MercuryApplication.showProgressDialog(activity.getSupportFragmentManager(), activity.getString(R.string.sending_command));
+        }
 
         EventBus.getDefault().removeStickyEvent(event);
     }
 
     @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
     public void onSshCommandEnd(SshCommandEnd event) {
-        Toast.makeText(activity, activity.getString(event.getStatus().message()), Toast.LENGTH_SHORT).show();
+        String message = activity.getString(event.getStatus().message());
+        if (event.getAttempts() > 1) {
+            message = activity.getString(R.string.command_attempts, message, event.getAttempts(), event.getElapsed() / 1000.0);
+        }
+        Toast.makeText(activity, message, Toast.LENGTH_SHORT).show();
         MercuryApplication.dismissProgressDialog(activity.getSupportFragmentManager());
 
         EventBus.getDefault().removeStickyEvent(event);
     }
 
     @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
-    public void onSshCommandPassword(final SshCommandPassword event) {
+    public void onSshCommandGroupStart(SshCommandGroupStart event) {
+        MercuryApplication.showProgressDialog(activity.getSupportFragmentManager(), activity.getString(R.string.running_on_group, event.getSize()));
+
+        EventBus.getDefault().removeStickyEvent(event);
+    }
+
+    @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
+    public void onSshCommandGroupEnd(SshCommandGroupEnd event) {
+        MercuryApplication.dismissProgressDialog(activity.getSupportFragmentManager());
+
+        int succeeded = 0;
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Server, SshCommandStatus> entry : event.getResults().entrySet()) {
+            if (entry.getValue() == SshCommandStatus.COMMAND_SENT) {
+                succeeded++;
+            }
+            sb.append(String.format("\n%s: %s", entry.getKey().getName(), activity.getString(entry.getValue().message())));
+        }
+        String summary = activity.getString(R.string.group_summary, succeeded, event.getResults().size(), event.getElapsed() / 1000f);
+
         new MaterialDialog.Builder(activity)
+                .title(activity.getString(R.string.group, event.getGroup()))
+                .content(summary + "\n" + sb.toString())
+                .positiveText(R.string.ok)
+                .show();
+
+        EventBus.getDefault().removeStickyEvent(event);
+    }
+
+    @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
+    public void onSshBenchmarkEnd(SshBenchmarkEnd event) {
+        StringBuilder sb = new StringBuilder();
+        for (SshBenchmarkResult result : event.getResults()) {
+            if (result.isFailed()) {
+                sb.append(activity.getString(R.string.benchmark_failed, result.getName()));
+            } else {
+                long throughput = SshCommandBenchmark.SAMPLE_SIZE / 1024 * 1000 / Math.max(1, result.getTransfer());
+                sb.append(activity.getString(R.string.benchmark_result, result.getName(), result.getHandshake(), throughput));
+            }
+            sb.append("\n");
+        }
+        sb.append("\n");
+        if (event.getFastest() != null) {
+            sb.append(activity.getString(R.string.benchmark_fastest, formatCrypto(event.getFastest())));
+        } else {
+            sb.append(activity.getString(R.string.benchmark_none));
+        }
+
+        new MaterialDialog.Builder(activity)
+                .title(activity.getString(R.string.benchmark_title, event.getServer()))
+                .content(sb.toString())
+                .positiveText(R.string.ok)
+                .show();
+
+        EventBus.getDefault().removeStickyEvent(event);
+    }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onSshCommandPassword(final SshCommandPassword event) {
+        if (isShowing(event)) {
+            return;
+        }
+        MaterialDialog dialog = new MaterialDialog.Builder(activity)
                 .title(R.string.password)
                 .content(event.getMessage())
                 .positiveText(R.string.submit)
@@ -95,23 +182,73 @@ public class SshEventSubscriber {
                 .input(null, null, false, new MaterialDialog.InputCallback() {
                     @Override
                     public void onInput(@NonNull MaterialDialog dialog, CharSequence input) {
-                        event.getDrop().put(input.toString());
+                        event.getPrompt().answer(input.toString());
                     }
                 })
                 .onNegative(new MaterialDialog.SingleButtonCallback() {
                     @Override
                     public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
-                        event.getDrop().put(null);
+                        event.getPrompt().answer(null);
                     }
                 })
                 .show();
+        dialogs.put(event.getPrompt().getId(), dialog);
+    }
 
-        EventBus.getDefault().removeStickyEvent(event);
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onSshCommandPreflight(final SshCommandPreflight event) {
+        if (isShowing(event)) {
+            return;
+        }
+        View view = activity.getLayoutInflater().inflate(R.layout.dialog_preflight, null);
+        ((TextView) view.findViewById(R.id.message)).setText(event.getMessage());
+        if (!event.getHosts().isEmpty()) {
+            TextView hostKeys = (TextView) view.findViewById(R.id.host_keys);
+            hostKeys.setText(activity.getString(R.string.accept_host_keys, StringUtils.join(event.getHosts(), "\n")));
+            hostKeys.setVisibility(View.VISIBLE);
+        }
+        LinearLayout fields = (LinearLayout) view.findViewById(R.id.fields);
+        final List<EditText> inputs = new ArrayList<>();
+        for (String prompt : event.getPrompts()) {
+            EditText input = new EditText(activity);
+            input.setHint(prompt);
+            input.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD);
+            fields.addView(input);
+            inputs.add(input);
+        }
+
+        MaterialDialog dialog = new MaterialDialog.Builder(activity)
+                .title(R.string.confirm_exec)
+                .customView(view, true)
+                .positiveText(R.string.ok)
+                .negativeText(R.string.cancel)
+                .cancelable(false)
+                .onPositive(new MaterialDialog.SingleButtonCallback() {
+                    @Override
+                    public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
+                        List<String> answers = new ArrayList<>();
+                        for (EditText input : inputs) {
+                            answers.add(StringUtils.defaultIfEmpty(input.getText().toString(), null));
+                        }
+                        event.getPrompt().answer(answers);
+                    }
+                })
+                .onNegative(new MaterialDialog.SingleButtonCallback() {
+                    @Override
+                    public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
+                        event.getPrompt().answer(null);
+                    }
+                })
+                .show();
+        dialogs.put(event.getPrompt().getId(), dialog);
     }
 
-    @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
+    @Subscribe(threadMode = ThreadMode.MAIN)
     public void onSshCommandYesNo(final SshCommandYesNo event) {
-        new MaterialDialog.Builder(activity)
+        if (isShowing(event)) {
+            return;
+        }
+        MaterialDialog dialog = new MaterialDialog.Builder(activity)
                 .content(event.getMessage())
                 .positiveText(R.string.yes)
                 .negativeText(R.string.no)
@@ -119,40 +256,44 @@ public class SshEventSubscriber {
                 .onPositive(new MaterialDialog.SingleButtonCallback() {
                     @Override
                     public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
-                        event.getDrop().put(true);
+                        event.getPrompt().answer(true);
                     }
                 })
                 .onNegative(new MaterialDialog.SingleButtonCallback() {
                     @Override
                     public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
-                        event.getDrop().put(false);
+                        event.getPrompt().answer(false);
                     }
                 })
                 .show();
-
-        EventBus.getDefault().removeStickyEvent(event);
+        dialogs.put(event.getPrompt().getId(), dialog);
     }
 
-    @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
+    @Subscribe(threadMode = ThreadMode.MAIN)
     public void onSshCommandMessage(final SshCommandMessage event) {
-        new MaterialDialog.Builder(activity)
+        if (isShowing(event)) {
+            return;
+        }
+        MaterialDialog dialog = new MaterialDialog.Builder(activity)
                 .content(event.getMessage())
                 .positiveText(R.string.ok)
                 .cancelable(false)
                 .onPositive(new MaterialDialog.SingleButtonCallback() {
                     @Override
                     public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
-                        event.getDrop().put(true);
+                        event.getPrompt().answer(true);
                     }
                 })
                 .show();
-
-        EventBus.getDefault().removeStickyEvent(event);
+        dialogs.put(event.getPrompt().getId(), dialog);
     }
 
-    @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
+    @Subscribe(threadMode = ThreadMode.MAIN)
     public void onSshCommandPubKeyInput(final SshCommandPubKeyInput event) {
-        new MaterialDialog.Builder(activity)
+        if (isShowing(event)) {
+            return;
+        }
+        MaterialDialog dialog = new MaterialDialog.Builder(activity)
                 .title(R.string.send_publick_key)
                 .content(R.string.connection_string_message)
                 .positiveText(R.string.submit)
@@ -175,19 +316,40 @@ public class SshEventSubscriber {
                     public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
                         if (dialog.getInputEditText() != null) {
                             String input = StringUtils.trimToNull(dialog.getInputEditText().getText().toString());
-                            event.getDrop().put(input);
+                            event.getPrompt().answer(input);
                         }
                     }
                 })
                 .onNegative(new MaterialDialog.SingleButtonCallback() {
                     @Override
                     public void onClick(@NonNull MaterialDialog dialog, @NonNull DialogAction which) {
-                        event.getDrop().put(null);
+                        event.getPrompt().answer(null);
                     }
                 })
                 .show();
+        dialogs.put(event.getPrompt().getId(), dialog);
+    }
 
-        EventBus.getDefault().removeStickyEvent(event);
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onSshPromptClosed(SshPromptClosed event) {
+        // answered elsewhere or given up on by the command
+        MaterialDialog dialog = dialogs.remove(event.getId());
+        if (dialog != null && dialog.isShowing()) {
+            dialog.dismiss();
+        }
+    }
+
+    private boolean isShowing(SshPromptEvent<?> event) {
+        MaterialDialog dialog = dialogs.get(event.getPrompt().getId());
+        return dialog != null && dialog.isShowing();
+    }
+
+    private String formatCrypto(SshBenchmarkResult result) {
+        return String.format("\"crypto\": { \"ciphers\": [\"%s\"], \"kex\": [\"%s\"], \"macs\": [\"%s\"], \"compression\": %d }",
+                StringUtils.join(result.getCrypto().getCiphers(), "\", \""),
+                StringUtils.join(result.getCrypto().getKex(), "\", \""),
+                StringUtils.join(result.getCrypto().getMacs(), "\", \""),
+                result.getCrypto().getCompression());
     }
 
     private boolean isConnectionStringValid(String input) {
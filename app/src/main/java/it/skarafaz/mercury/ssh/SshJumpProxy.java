@@ -0,0 +1,120 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import com.jcraft.jsch.ChannelDirectTCPIP;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Proxy;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SocketFactory;
+import it.skarafaz.mercury.manager.SshManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+
+public class SshJumpProxy implements Proxy {
+    private static final int MAX_TUNNELS = 16;
+    private static final Logger logger = LoggerFactory.getLogger(SshJumpProxy.class);
+    private final SshCommand command;
+    private final SshSessionKey jump;
+    private Session bastion;
+    private ChannelDirectTCPIP channel;
+    private InputStream in;
+    private OutputStream out;
+
+    public SshJumpProxy(SshCommand command, SshSessionKey jump) {
+        this.command = command;
+        this.jump = jump;
+    }
+
+    @Override
+    public void connect(SocketFactory socketFactory, String host, int port, int timeout) throws Exception {
+        SshSessionPool pool = SshManager.getInstance().getSessionPool();
+        SshCircuitBreaker circuitBreaker = SshManager.getInstance().getCircuitBreaker();
+
+        // the bastion has a circuit of its own, its failures say nothing about the target
+        if (!circuitBreaker.allow(jump.getHost(), jump.getPort())) {
+            throw new SshJumpException(String.format("jump host %s is unavailable", jump), null);
+        }
+        try {
+            // the bastion session is shared by all the targets behind it, each tunnel holds a lease on it
+            bastion = pool.borrow(jump, new SshSessionPool.Factory() {
+                @Override
+                public Session create() throws JSchException {
+                    return command.createBastionSession(jump);
+                }
+            }, MAX_TUNNELS);
+            circuitBreaker.onSuccess(jump.getHost(), jump.getPort());
+        } catch (JSchException e) {
+            circuitBreaker.onFailure(jump.getHost(), jump.getPort(), e);
+            throw new SshJumpException(String.format("jump host %s: %s", jump, e.getMessage()), e);
+        }
+
+        try {
+            channel = (ChannelDirectTCPIP) bastion.openChannel("direct-tcpip");
+            channel.setHost(host);
+            channel.setPort(port);
+            in = channel.getInputStream();
+            out = channel.getOutputStream();
+            channel.connect(timeout);
+        } catch (JSchException e) {
+            close();
+            // the bastion refusing or failing to open the tunnel means the target cannot be reached
+            throw new JSchException(String.format("cannot reach %s:%d through %s: %s", host, port, jump, e.getMessage()), new ConnectException(e.getMessage()));
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        logger.debug("tunnel to {}:{} opened through {}", host, port, jump);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    @Override
+    public Socket getSocket() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            channel.disconnect();
+            channel = null;
+        }
+        if (bastion != null) {
+            SshManager.getInstance().getSessionPool().release(jump, bastion);
+            bastion = null;
+        }
+    }
+}
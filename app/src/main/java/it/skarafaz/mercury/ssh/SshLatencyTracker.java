@@ -0,0 +1,92 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SshLatencyTracker {
+    private static final int WINDOW_SIZE = 32;
+    private static final int MIN_SAMPLES = 5;
+    private static final double PERCENTILE = 0.99;
+    private static final double FACTOR = 3;
+    private static final int DEFAULT_TIMEOUT = 10000;
+    private static final int MIN_TIMEOUT = 2000;
+    private static final int MAX_TIMEOUT = 30000;
+    private static final Logger logger = LoggerFactory.getLogger(SshLatencyTracker.class);
+    private final Map<String, Window> windows;
+
+    public SshLatencyTracker() {
+        windows = new HashMap<>();
+    }
+
+    public synchronized void record(Operation operation, String host, int port, long latency) {
+        String key = getKey(operation, host, port);
+        Window window = windows.get(key);
+        if (window == null) {
+            window = new Window();
+            windows.put(key, window);
+        }
+        window.add(latency);
+    }
+
+    public synchronized int getTimeout(Operation operation, String host, int port) {
+        Window window = windows.get(getKey(operation, host, port));
+        if (window == null || window.count < MIN_SAMPLES) {
+            return DEFAULT_TIMEOUT;
+        }
+        long timeout = (long) (window.percentile(PERCENTILE) * FACTOR);
+        timeout = Math.max(MIN_TIMEOUT, Math.min(MAX_TIMEOUT, timeout));
+        logger.debug("{} timeout for {}:{} is {} ms", operation, host, port, timeout);
+        return (int) timeout;
+    }
+
+    private String getKey(Operation operation, String host, int port) {
+        return String.format("%s %s:%d", operation, host, port);
+    }
+
+    public enum Operation {
+        CONNECT, CHANNEL
+    }
+
+    private static class Window {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+
+        private void add(long sample) {
+            samples[next] = sample;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        private long percentile(double percentile) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return sorted[Math.max(0, index)];
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import it.skarafaz.mercury.model.event.SshCommandOutput;
+import org.greenrobot.eventbus.EventBus;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SshOutputBuffer {
+    private final int id;
+    private final String title;
+    private final byte[] data;
+    private final AtomicBoolean notified;
+    private long position;
+    private boolean closed;
+
+    public SshOutputBuffer(int id, String title, int capacity) {
+        this.id = id;
+        this.title = title;
+        this.data = new byte[capacity];
+        this.notified = new AtomicBoolean();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getCapacity() {
+        return data.length;
+    }
+
+    public void write(byte[] b, int off, int len) {
+        synchronized (this) {
+            // only the tail of a write larger than the whole buffer can survive
+            if (len > data.length) {
+                position += len - data.length;
+                off += len - data.length;
+                len = data.length;
+            }
+            int start = (int) (position % data.length);
+            int first = Math.min(len, data.length - start);
+            System.arraycopy(b, off, data, start, first);
+            System.arraycopy(b, off + first, data, 0, len - first);
+            position += len;
+        }
+        notifyChanged();
+    }
+
+    public synchronized Chunk read(long from) {
+        long oldest = Math.max(0, position - data.length);
+        boolean truncated = from < oldest;
+        long start = Math.max(from, oldest);
+        byte[] bytes = new byte[(int) (position - start)];
+        int offset = (int) (start % data.length);
+        int first = Math.min(bytes.length, data.length - offset);
+        System.arraycopy(data, offset, bytes, 0, first);
+        System.arraycopy(data, 0, bytes, first, bytes.length - first);
+        return new Chunk(bytes, position, truncated);
+    }
+
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        notifyChanged();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public void acknowledge() {
+        notified.set(false);
+    }
+
+    private void notifyChanged() {
+        // at most one pending notification, the reader catches up with everything written meanwhile
+        if (notified.compareAndSet(false, true)) {
+            EventBus.getDefault().post(new SshCommandOutput(id));
+        }
+    }
+
+    public static class Chunk {
+        private final byte[] data;
+        private final long end;
+        private final boolean truncated;
+
+        private Chunk(byte[] data, long end, boolean truncated) {
+            this.data = data;
+            this.end = end;
+            this.truncated = truncated;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+}
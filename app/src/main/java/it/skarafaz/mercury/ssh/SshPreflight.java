@@ -0,0 +1,274 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import com.jcraft.jsch.HostKey;
+import com.jcraft.jsch.HostKeyRepository;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.UserInfo;
+import it.skarafaz.mercury.MercuryApplication;
+import it.skarafaz.mercury.R;
+import it.skarafaz.mercury.manager.SettingsManager;
+import it.skarafaz.mercury.manager.SshManager;
+import it.skarafaz.mercury.model.event.SshCommandPreflight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class SshPreflight {
+    private static final Logger logger = LoggerFactory.getLogger(SshPreflight.class);
+    private String message;
+    private Collection<SshCommandRegular> commands;
+
+    public SshPreflight(String message, Collection<SshCommandRegular> commands) {
+        this.message = message;
+        this.commands = commands;
+    }
+
+    public boolean collect() {
+        boolean keyLocked = false;
+        Map<String, List<SshCommandRegular>> sudo = new LinkedHashMap<>();
+        Map<String, Callable<HostKey>> scans = new LinkedHashMap<>();
+        Map<String, HostKey> hostKeys = new TreeMap<>();
+        List<String> hosts = new ArrayList<>();
+        JSch jsch = null;
+        SshCircuitBreaker circuitBreaker = SshManager.getInstance().getCircuitBreaker();
+        try {
+            jsch = SshManager.getInstance().getJSch();
+            keyLocked = SshManager.getInstance().isKeyLocked();
+            for (SshCommandRegular command : commands) {
+                String label = command.getSudoLabel();
+                if (label != null) {
+                    if (!sudo.containsKey(label)) {
+                        sudo.put(label, new ArrayList<SshCommandRegular>());
+                    }
+                    sudo.get(label).add(command);
+                }
+                // a host behind a bastion cannot be reached directly, its key is still asked on first connection
+                final SshSessionKey key = command.getSessionKey();
+                final SshSessionKey direct = key.getJump() != null ? key.getJump() : key;
+                String host = formatHost(direct);
+                if (!scans.containsKey(host) && !isKnown(jsch, host) && circuitBreaker.isAvailable(direct.getHost(), direct.getPort())) {
+                    final JSch scanJSch = jsch;
+                    final Properties config = key.getJump() != null ? SshCommand.getBastionConfig() : command.getSessionConfig();
+                    scans.put(host, new Callable<HostKey>() {
+                        @Override
+                        public HostKey call() {
+                            return scan(scanJSch, config, direct);
+                        }
+                    });
+                }
+            }
+            hostKeys.putAll(scanAll(scans));
+            for (HostKey hostKey : hostKeys.values()) {
+                hosts.add(String.format("%s\n%s %s", hostKey.getHost(), hostKey.getType(), hostKey.getFingerPrint(jsch)));
+            }
+        } catch (IOException | JSchException e) {
+            // commands will report the failure themselves when they connect
+            logger.error(e.getMessage().replace("\n", " "));
+        }
+
+        List<String> prompts = new ArrayList<>();
+        if (keyLocked) {
+            prompts.add(MercuryApplication.getContext().getString(R.string.type_key_passphrase));
+        }
+        for (String label : sudo.keySet()) {
+            prompts.add(MercuryApplication.getContext().getString(R.string.type_sudo_password, label));
+        }
+
+        SshCommandPreflight event = new SshCommandPreflight(message, prompts, hosts);
+        List<String> answers = SshPromptBroker.getInstance().ask(event, null);
+        if (answers == null) {
+            return false;
+        }
+
+        // empty answers are left to the regular prompts once the command runs
+        int i = 0;
+        if (keyLocked) {
+            unlockKey(answers.get(i++));
+        }
+        for (List<SshCommandRegular> list : sudo.values()) {
+            String password = answers.get(i++);
+            if (password != null) {
+                for (SshCommandRegular command : list) {
+                    command.setSudoPassword(password);
+                }
+            }
+        }
+        // the commands find the keys the user has seen, a different key presented later is asked again
+        for (HostKey hostKey : hostKeys.values()) {
+            jsch.getHostKeyRepository().add(hostKey, null);
+        }
+        logger.debug("preflight collected {} answers, {} new host keys accepted", prompts.size(), hostKeys.size());
+        return true;
+    }
+
+    private void unlockKey(String passphrase) {
+        if (passphrase != null) {
+            try {
+                if (!SshManager.getInstance().unlockKey(passphrase)) {
+                    logger.warn("wrong passphrase, the key will be asked again on connection");
+                }
+            } catch (IOException | JSchException e) {
+                logger.error(e.getMessage().replace("\n", " "));
+            }
+        }
+    }
+
+    private Map<String, HostKey> scanAll(Map<String, Callable<HostKey>> scans) {
+        // the hosts are scanned side by side, the form waits for the slowest of them only
+        Map<String, HostKey> hostKeys = new HashMap<>();
+        if (scans.isEmpty()) {
+            return hostKeys;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(scans.size(), SettingsManager.getInstance().getGroupParallelism()), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ssh-host-key-scan");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            Map<String, Future<HostKey>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, Callable<HostKey>> scan : scans.entrySet()) {
+                futures.put(scan.getKey(), executor.submit(scan.getValue()));
+            }
+            for (Map.Entry<String, Future<HostKey>> future : futures.entrySet()) {
+                try {
+                    HostKey hostKey = future.getValue().get();
+                    if (hostKey != null) {
+                        hostKeys.put(future.getKey(), hostKey);
+                    }
+                } catch (ExecutionException e) {
+                    logger.error("host key scan of {} failed: {}", future.getKey(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return hostKeys;
+    }
+
+    private HostKey scan(JSch jsch, Properties config, SshSessionKey key) {
+        ScanRepository repository = new ScanRepository();
+        Session session = null;
+        try {
+            int timeout = SshManager.getInstance().getLatencyTracker().getTimeout(SshLatencyTracker.Operation.CONNECT, key.getHost(), key.getPort());
+            session = jsch.getSession(key.getUser(), key.getHost(), key.getPort());
+            session.setHostKeyRepository(repository);
+            config.put("StrictHostKeyChecking", "yes");
+            session.setConfig(config);
+            session.setSocketFactory(new SshSocketFactory(timeout, null));
+            session.connect(timeout);
+        } catch (JSchException e) {
+            // the unknown key is rejected right after the key exchange, that ends the scan
+            logger.debug("host key scan of {}: {}", key.getHost(), e.getMessage());
+            if (repository.host == null) {
+                SshManager.getInstance().getCircuitBreaker().onFailure(key.getHost(), key.getPort(), e);
+            }
+        } finally {
+            if (session != null) {
+                session.disconnect();
+            }
+        }
+
+        if (repository.host != null) {
+            try {
+                return new HostKey(repository.host, repository.key);
+            } catch (JSchException e) {
+                logger.error(e.getMessage().replace("\n", " "));
+            }
+        }
+        return null;
+    }
+
+    private boolean isKnown(JSch jsch, String host) {
+        HostKey[] keys = jsch.getHostKeyRepository().getHostKey(host, null);
+        return keys != null && keys.length > 0;
+    }
+
+    private String formatHost(SshSessionKey key) {
+        // same notation jsch uses for known_hosts entries
+        if (key.getPort() == 22) {
+            return key.getHost();
+        }
+        return String.format("[%s]:%d", key.getHost(), key.getPort());
+    }
+
+    private static class ScanRepository implements HostKeyRepository {
+        private String host;
+        private byte[] key;
+
+        @Override
+        public int check(String host, byte[] key) {
+            this.host = host;
+            this.key = key;
+            return NOT_INCLUDED;
+        }
+
+        @Override
+        public void add(HostKey hostkey, UserInfo ui) {
+        }
+
+        @Override
+        public void remove(String host, String type) {
+        }
+
+        @Override
+        public void remove(String host, String type, byte[] key) {
+        }
+
+        @Override
+        public String getKnownHostsRepositoryID() {
+            return null;
+        }
+
+        @Override
+        public HostKey[] getHostKey() {
+            return new HostKey[0];
+        }
+
+        @Override
+        public HostKey[] getHostKey(String host, String type) {
+            return new HostKey[0];
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SshPrompt<T> implements Future<T> {
+    private static final AtomicLong lastId = new AtomicLong();
+    private final long id;
+    private final CountDownLatch done;
+    private T answer;
+    private boolean cancelled;
+
+    public SshPrompt() {
+        this.id = lastId.incrementAndGet();
+        this.done = new CountDownLatch(1);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public synchronized boolean answer(T answer) {
+        if (isDone()) {
+            return false;
+        }
+        this.answer = answer;
+        done.countDown();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+        if (isDone()) {
+            return false;
+        }
+        cancelled = true;
+        done.countDown();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException {
+        done.await();
+        return getAnswer();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException(String.format("prompt %d not answered", id));
+        }
+        return getAnswer();
+    }
+
+    private synchronized T getAnswer() {
+        if (cancelled) {
+            throw new CancellationException(String.format("prompt %d cancelled", id));
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import it.skarafaz.mercury.model.event.SshPromptClosed;
+import it.skarafaz.mercury.model.event.SshPromptEvent;
+import org.greenrobot.eventbus.EventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class SshPromptBroker {
+    private static final long TIMEOUT = 5 * 60 * 1000;
+    private static final Logger logger = LoggerFactory.getLogger(SshPromptBroker.class);
+    private static SshPromptBroker instance;
+    private final Map<Long, SshPromptEvent<?>> pending;
+
+    private SshPromptBroker() {
+        pending = new LinkedHashMap<>();
+    }
+
+    public static synchronized SshPromptBroker getInstance() {
+        if (instance == null) {
+            instance = new SshPromptBroker();
+        }
+        return instance;
+    }
+
+    public <T> T ask(SshPromptEvent<T> event, T fallback) {
+        SshPrompt<T> prompt = event.getPrompt();
+        synchronized (this) {
+            pending.put(prompt.getId(), event);
+        }
+        EventBus.getDefault().post(event);
+
+        try {
+            return prompt.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("prompt {} not answered in {} s, giving up", prompt.getId(), TIMEOUT / 1000);
+            return fallback;
+        } catch (CancellationException e) {
+            logger.debug("prompt {} cancelled", prompt.getId());
+            return fallback;
+        } catch (InterruptedException e) {
+            logger.debug("interrupted while waiting for prompt {}", prompt.getId());
+            Thread.currentThread().interrupt();
+            return fallback;
+        } finally {
+            prompt.cancel(false);
+            synchronized (this) {
+                pending.remove(prompt.getId());
+            }
+            EventBus.getDefault().post(new SshPromptClosed(prompt.getId()));
+        }
+    }
+
+    public void replay() {
+        // prompts posted while no activity was listening are shown as soon as one starts
+        List<SshPromptEvent<?>> events;
+        synchronized (this) {
+            events = new ArrayList<>(pending.values());
+        }
+        for (SshPromptEvent<?> event : events) {
+            EventBus.getDefault().post(event);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class SshResolver {
+    private static final long TTL = 5 * 60 * 1000;
+    private static final long NEGATIVE_TTL = 10 * 1000;
+    private static final long REFRESH_INTERVAL = 60 * 1000;
+    private static final long REFRESH_WINDOW = 2 * 60 * 1000;
+    private static final long ACTIVE_PERIOD = 30 * 60 * 1000;
+    private static final Logger logger = LoggerFactory.getLogger(SshResolver.class);
+    private final Map<String, Entry> entries;
+    private final Set<String> watched;
+    private final ScheduledExecutorService refresher;
+
+    public SshResolver() {
+        entries = new HashMap<>();
+        watched = new HashSet<>();
+        refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ssh-resolver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        refresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh(false);
+            }
+        }, REFRESH_INTERVAL, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(host);
+            if (entry != null && entry.expires > System.currentTimeMillis()) {
+                entry.lastUsed = System.currentTimeMillis();
+            } else {
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            entry = lookup(host);
+        }
+        if (entry.failure != null) {
+            throw entry.failure;
+        }
+        return entry.addresses;
+    }
+
+    public synchronized void invalidate(String host) {
+        entries.remove(host);
+    }
+
+    public void watch(Collection<String> hosts) {
+        synchronized (this) {
+            watched.clear();
+            watched.addAll(hosts);
+        }
+        refresher.execute(new Runnable() {
+            @Override
+            public void run() {
+                refresh(true);
+            }
+        });
+    }
+
+    private void refresh(boolean all) {
+        // only hosts in use are kept fresh, so that idle devices do not query dns every minute
+        Set<String> hosts = new HashSet<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (String host : watched) {
+                Entry entry = entries.get(host);
+                if (entry == null ? all : now - entry.lastUsed < ACTIVE_PERIOD && entry.expires - now < REFRESH_WINDOW) {
+                    hosts.add(host);
+                }
+            }
+        }
+        for (String host : hosts) {
+            lookup(host);
+        }
+    }
+
+    private Entry lookup(String host) {
+        Entry entry = new Entry();
+        long start = System.currentTimeMillis();
+        try {
+            entry.addresses = InetAddress.getAllByName(host);
+            entry.expires = System.currentTimeMillis() + TTL;
+            logger.debug("resolved {} in {} ms", host, System.currentTimeMillis() - start);
+        } catch (UnknownHostException e) {
+            entry.failure = e;
+            entry.expires = System.currentTimeMillis() + NEGATIVE_TTL;
+            logger.debug("cannot resolve {}: {}", host, e.getMessage());
+        }
+
+        synchronized (this) {
+            Entry previous = entries.get(host);
+            entry.lastUsed = previous != null ? previous.lastUsed : System.currentTimeMillis();
+            // a failed refresh does not replace addresses that are still valid
+            if (entry.failure == null || previous == null || previous.failure != null || previous.expires <= System.currentTimeMillis()) {
+                entries.put(host, entry);
+            } else {
+                entry = previous;
+            }
+        }
+        return entry;
+    }
+
+    private static class Entry {
+        private InetAddress[] addresses;
+        private UnknownHostException failure;
+        private long expires;
+        private long lastUsed;
+    }
+}
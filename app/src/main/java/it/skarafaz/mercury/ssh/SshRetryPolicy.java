@@ -0,0 +1,69 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import it.skarafaz.mercury.model.config.Retry;
+
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+
+public class SshRetryPolicy {
+    public static final String RETRY_ON_CONNECTION = "connection";
+    public static final String RETRY_ON_EXECUTION = "execution";
+    public static final SshRetryPolicy NONE = new SshRetryPolicy(1, 0, 0, 0, EnumSet.noneOf(SshCommandStatus.class));
+    private final int maxAttempts;
+    private final long backoffBase;
+    private final long backoffCap;
+    private final double jitter;
+    private final Set<SshCommandStatus> retryable;
+    private final Random random;
+
+    public SshRetryPolicy(Retry retry) {
+        this(retry.getMaxAttempts(), retry.getBackoffBase(), retry.getBackoffCap(), retry.getJitter(), EnumSet.noneOf(SshCommandStatus.class));
+        for (String retryOn : retry.getRetryOn()) {
+            if (RETRY_ON_CONNECTION.equals(retryOn)) {
+                retryable.add(SshCommandStatus.CONNECTION_FAILED);
+            } else if (RETRY_ON_EXECUTION.equals(retryOn)) {
+                retryable.add(SshCommandStatus.EXECUTION_FAILED);
+            }
+        }
+    }
+
+    private SshRetryPolicy(int maxAttempts, long backoffBase, long backoffCap, double jitter, Set<SshCommandStatus> retryable) {
+        this.maxAttempts = maxAttempts;
+        this.backoffBase = backoffBase;
+        this.backoffCap = backoffCap;
+        this.jitter = jitter;
+        this.retryable = retryable;
+        this.random = new Random();
+    }
+
+    public boolean shouldRetry(SshCommandStatus status, int attempt) {
+        return attempt < maxAttempts && retryable.contains(status);
+    }
+
+    public long getBackoff(int attempt) {
+        long backoff = Math.min(backoffCap, backoffBase * (1L << Math.min(attempt - 1, 20)));
+        // jitter spreads out the retries of commands that failed together, e.g. on a group run
+        return (long) (backoff * (1 - jitter * random.nextDouble()));
+    }
+}
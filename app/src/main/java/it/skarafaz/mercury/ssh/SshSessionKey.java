@@ -0,0 +1,90 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import java.util.Arrays;
+
+public class SshSessionKey {
+    private String user;
+    private String host;
+    private Integer port;
+    private String password;
+    private SshSessionKey jump;
+
+    public SshSessionKey(String user, String host, Integer port, String password, SshSessionKey jump) {
+        this.user = user;
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.jump = jump;
+    }
+
+    public static SshSessionKey parse(String connection) {
+        String[] sConnection = connection.split("@");
+        String[] sRight = sConnection[1].split(":");
+        return new SshSessionKey(sConnection[0], sRight[0], sRight.length > 1 ? Integer.valueOf(sRight[1]) : 22, null, null);
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public Integer getPort() {
+        return port;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public SshSessionKey getJump() {
+        return jump;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SshSessionKey)) {
+            return false;
+        }
+        SshSessionKey other = (SshSessionKey) o;
+        return Arrays.equals(new Object[] { user, host, port, password, jump }, new Object[] { other.user, other.host, other.port, other.password, other.jump });
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new Object[] { user, host, port, password, jump });
+    }
+
+    @Override
+    public String toString() {
+        if (jump != null) {
+            return String.format("%s@%s:%d via %s", user, host, port, jump);
+        }
+        return String.format("%s@%s:%d", user, host, port);
+    }
+}
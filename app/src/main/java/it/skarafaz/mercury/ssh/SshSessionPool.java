@@ -0,0 +1,296 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import it.skarafaz.mercury.manager.SettingsManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class SshSessionPool {
+    private static final int MAX_SIZE = 8;
+    private static final long IDLE_TIMEOUT = 5 * 60 * 1000;
+    private static final long LIVENESS_CHECK_THRESHOLD = 30 * 1000;
+    private static final long EVICTION_INTERVAL = 60 * 1000;
+    private static final Logger logger = LoggerFactory.getLogger(SshSessionPool.class);
+    private final Map<SshSessionKey, List<PooledSession>> sessions;
+    private final Map<String, Object> locks;
+    private final ScheduledExecutorService evictor;
+
+    public SshSessionPool() {
+        sessions = new LinkedHashMap<>();
+        locks = new HashMap<>();
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ssh-session-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdle();
+            }
+        }, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public Session borrow(SshSessionKey key, Factory factory) throws JSchException {
+        return borrow(key, factory, SettingsManager.getInstance().getChannelsPerSession());
+    }
+
+    public Session borrow(SshSessionKey key, Factory factory, int maxLeases) throws JSchException {
+        // concurrent borrowers of the same key wait for a single handshake and then share its session,
+        // including the time the user takes to answer the dialogs of that handshake
+        synchronized (getLock(key)) {
+            Session session = takeShared(key, maxLeases);
+            if (session != null) {
+                logger.debug("reusing session {}", key);
+                return session;
+            }
+
+            session = factory.create();
+            synchronized (this) {
+                getSessions(key).add(new PooledSession(session));
+            }
+            logger.debug("opened session {}", key);
+            return session;
+        }
+    }
+
+    public SshShell getShell(SshSessionKey key, Session session, int timeout) throws JSchException, IOException {
+        // a session has at most one shell, shared by the commands leasing it and closed along with it
+        synchronized (getLock(key)) {
+            PooledSession pooled;
+            synchronized (this) {
+                pooled = find(key, session);
+            }
+            if (pooled == null) {
+                throw new JSchException(String.format("session %s is not pooled", key));
+            }
+            if (pooled.shell == null || !pooled.shell.isOpen()) {
+                pooled.shell = new SshShell(session, timeout);
+                logger.debug("opened shell {}", key);
+            }
+            return pooled.shell;
+        }
+    }
+
+    public void release(SshSessionKey key, Session session) {
+        returnLease(key, session, !session.isConnected());
+    }
+
+    public void invalidate(SshSessionKey key, Session session) {
+        returnLease(key, session, true);
+        logger.debug("invalidated session {}", key);
+    }
+
+    public void evictIdle() {
+        List<Session> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (List<PooledSession> list : sessions.values()) {
+                for (Iterator<PooledSession> it = list.iterator(); it.hasNext(); ) {
+                    PooledSession pooled = it.next();
+                    if (pooled.leases == 0 && (now - pooled.lastUsed > IDLE_TIMEOUT || !pooled.session.isConnected())) {
+                        it.remove();
+                        evicted.add(pooled.session);
+                    }
+                }
+            }
+            removeEmptyKeys();
+        }
+        disconnect(evicted);
+    }
+
+    private Session takeShared(SshSessionKey key, int maxLeases) {
+        while (true) {
+            PooledSession candidate = null;
+            synchronized (this) {
+                for (PooledSession pooled : getSessions(key)) {
+                    if (!pooled.invalid && pooled.leases < maxLeases) {
+                        candidate = pooled;
+                        break;
+                    }
+                }
+                if (candidate == null) {
+                    return null;
+                }
+                candidate.leases++;
+            }
+
+            if (isAlive(candidate)) {
+                synchronized (this) {
+                    candidate.lastUsed = System.currentTimeMillis();
+                }
+                return candidate.session;
+            }
+            invalidate(key, candidate.session);
+        }
+    }
+
+    private void returnLease(SshSessionKey key, Session session, boolean invalid) {
+        List<Session> evicted = new ArrayList<>();
+        synchronized (this) {
+            PooledSession pooled = find(key, session);
+            if (pooled == null) {
+                evicted.add(session);
+            } else {
+                pooled.leases--;
+                pooled.lastUsed = System.currentTimeMillis();
+                pooled.invalid |= invalid;
+                // an invalid session stays open until the other channels sharing it are done
+                if (pooled.invalid && pooled.leases == 0) {
+                    getSessions(key).remove(pooled);
+                    evicted.add(session);
+                }
+                evicted.addAll(trimToSize());
+            }
+        }
+        disconnect(evicted);
+    }
+
+    private boolean isAlive(PooledSession pooled) {
+        if (!pooled.session.isConnected()) {
+            return false;
+        }
+        // sessions with other channels open have just proven to be alive
+        if (pooled.leases == 1 && System.currentTimeMillis() - pooled.lastUsed > LIVENESS_CHECK_THRESHOLD) {
+            try {
+                pooled.session.sendKeepAliveMsg();
+            } catch (Exception e) {
+                logger.debug("pooled session is dead: {}", e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Session> trimToSize() {
+        List<Session> evicted = new ArrayList<>();
+        while (countIdle() > MAX_SIZE) {
+            PooledSession oldest = null;
+            for (List<PooledSession> list : sessions.values()) {
+                for (PooledSession pooled : list) {
+                    if (pooled.leases == 0 && (oldest == null || pooled.lastUsed < oldest.lastUsed)) {
+                        oldest = pooled;
+                    }
+                }
+            }
+            for (List<PooledSession> list : sessions.values()) {
+                list.remove(oldest);
+            }
+            evicted.add(oldest.session);
+        }
+        removeEmptyKeys();
+        return evicted;
+    }
+
+    private int countIdle() {
+        int count = 0;
+        for (List<PooledSession> list : sessions.values()) {
+            for (PooledSession pooled : list) {
+                if (pooled.leases == 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void removeEmptyKeys() {
+        for (Iterator<List<PooledSession>> it = sessions.values().iterator(); it.hasNext(); ) {
+            if (it.next().isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    private PooledSession find(SshSessionKey key, Session session) {
+        List<PooledSession> list = sessions.get(key);
+        if (list != null) {
+            for (PooledSession pooled : list) {
+                if (pooled.session == session) {
+                    return pooled;
+                }
+            }
+        }
+        return null;
+    }
+
+    private synchronized Object getLock(SshSessionKey key) {
+        // keys carry passwords, locks only need the account so that they stay few and hold no secrets
+        String account = String.format("%s@%s:%d", key.getUser(), key.getHost(), key.getPort());
+        Object lock = locks.get(account);
+        if (lock == null) {
+            lock = new Object();
+            locks.put(account, lock);
+        }
+        return lock;
+    }
+
+    private List<PooledSession> getSessions(SshSessionKey key) {
+        List<PooledSession> list = sessions.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            sessions.put(key, list);
+        }
+        return list;
+    }
+
+    private void disconnect(List<Session> evicted) {
+        for (Session session : evicted) {
+            session.disconnect();
+        }
+    }
+
+    public interface Factory {
+        Session create() throws JSchException;
+    }
+
+    private static class PooledSession {
+        private final Session session;
+        private int leases;
+        private long lastUsed;
+        private boolean invalid;
+        private SshShell shell;
+
+        private PooledSession(Session session) {
+            this.session = session;
+            this.leases = 1;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+}
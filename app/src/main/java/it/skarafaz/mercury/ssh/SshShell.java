@@ -0,0 +1,202 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import com.jcraft.jsch.ChannelShell;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+public class SshShell {
+    private static final long CLOSE_CHECK_INTERVAL = 1000;
+    private static final int LINE_LIMIT = 8192;
+    private final ChannelShell channel;
+    private final MarkerSink sink;
+    private final OutputStream input;
+    private final String markerPrefix;
+    private long sequence;
+
+    public SshShell(Session session, int timeout) throws JSchException, IOException {
+        markerPrefix = String.format("__mercury_%s", UUID.randomUUID().toString().replace("-", ""));
+        sink = new MarkerSink();
+
+        channel = (ChannelShell) session.openChannel("shell");
+        channel.setPty(false);
+        channel.setOutputStream(sink);
+        channel.setExtOutputStream(sink);
+        input = channel.getOutputStream();
+        channel.connect(timeout);
+    }
+
+    // commands run one at a time: while a waited-for command runs, up to the shell timeout, the others leasing the
+    // session queue here instead of opening channels of their own
+    public synchronized int exec(String cmd, SshChannelSink target, long timeout) throws IOException {
+        if (!isOpen()) {
+            throw new IOException("shell channel is closed");
+        }
+        String marker = String.format("%s_%d__", markerPrefix, ++sequence);
+        sink.begin(marker, target);
+
+        // the marker line carries the exit status and tells where the command output ends, the command is
+        // quoted and evaluated so that unbalanced quotes or here-docs fail on their own instead of eating the marker,
+        // in a subshell so that cd, export, set, traps or exit do not outlive the command
+        String quoted = "'" + cmd.replace("'", "'\\''") + "'";
+        String framed = "( eval " + quoted + "\n) < /dev/null 2>&1; printf '%s:%d\\n' " + marker + " $?\n";
+        input.write(framed.getBytes("UTF-8"));
+        input.flush();
+
+        try {
+            return sink.await(timeout);
+        } catch (IOException e) {
+            // the shell may still be busy with the command, nobody else can use it
+            close();
+            throw e;
+        }
+    }
+
+    public boolean isOpen() {
+        return channel.isConnected() && !sink.isClosed();
+    }
+
+    public void close() {
+        channel.disconnect();
+    }
+
+    private class MarkerSink extends OutputStream {
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private String marker;
+        private SshChannelSink target;
+        private Integer exitStatus;
+        private boolean closed;
+
+        private synchronized void begin(String marker, SshChannelSink target) {
+            this.marker = marker;
+            this.target = target;
+            this.exitStatus = null;
+        }
+
+        private synchronized int await(long timeout) throws IOException {
+            long deadline = System.currentTimeMillis() + timeout;
+            try {
+                while (exitStatus == null) {
+                    if (closed || channel.isClosed()) {
+                        throw new IOException("shell channel is closed");
+                    }
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        throw new IOException(String.format("timeout: command did not finish in %d s", timeout / 1000));
+                    }
+                    wait(Math.min(left, CLOSE_CHECK_INTERVAL));
+                }
+                return exitStatus;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            } finally {
+                marker = null;
+                target = null;
+            }
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                line.write(b[i]);
+                if (b[i] == '\n') {
+                    processLine();
+                }
+            }
+            if (line.size() > LINE_LIMIT) {
+                processPartialLine();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        private void processLine() {
+            byte[] bytes = line.toByteArray();
+            line.reset();
+
+            int index = marker != null ? indexOf(bytes, marker + ":") : -1;
+            if (index < 0) {
+                forward(bytes, bytes.length);
+                return;
+            }
+
+            forward(bytes, index);
+            String status = new String(bytes, index + marker.length() + 1, bytes.length - index - marker.length() - 1).trim();
+            try {
+                exitStatus = Integer.parseInt(status);
+            } catch (NumberFormatException e) {
+                exitStatus = -1;
+            }
+            notifyAll();
+        }
+
+        private void processPartialLine() {
+            // keep enough bytes to recognize a marker split across writes
+            byte[] bytes = line.toByteArray();
+            int keep = Math.min(bytes.length, markerPrefix.length() + 32);
+            forward(bytes, bytes.length - keep);
+            line.reset();
+            line.write(bytes, bytes.length - keep, keep);
+        }
+
+        private void forward(byte[] bytes, int len) {
+            // output written between two commands, e.g. by background jobs, is dropped
+            if (target != null && len > 0) {
+                target.write(bytes, 0, len);
+            }
+        }
+
+        private int indexOf(byte[] bytes, String pattern) {
+            byte[] p = pattern.getBytes();
+            for (int i = 0; i <= bytes.length - p.length; i++) {
+                int j = 0;
+                while (j < p.length && bytes[i + j] == p[j]) {
+                    j++;
+                }
+                if (j == p.length) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
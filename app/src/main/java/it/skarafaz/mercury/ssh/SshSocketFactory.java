@@ -0,0 +1,214 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import com.jcraft.jsch.SocketFactory;
+import it.skarafaz.mercury.manager.SshManager;
+import it.skarafaz.mercury.model.config.SocketOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SshSocketFactory implements SocketFactory {
+    private static final long ATTEMPT_DELAY = 250;
+    private static final Logger logger = LoggerFactory.getLogger(SshSocketFactory.class);
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, String.format("ssh-connect-%d", count.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final int timeout;
+    private final SocketOptions options;
+
+    public SshSocketFactory(int timeout, SocketOptions options) {
+        this.timeout = timeout;
+        this.options = options;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        List<InetAddress> addresses = sortAddresses(SshManager.getInstance().getResolver().resolve(host));
+        long start = System.currentTimeMillis();
+        long deadline = start + timeout;
+
+        // attempts start one after another with a short delay, or as soon as the previous one fails; the first to connect wins
+        CompletionService<Socket> attempts = new ExecutorCompletionService<>(executor);
+        AtomicBoolean settled = new AtomicBoolean();
+        IOException failure = null;
+        int started = 0;
+        int pending = 0;
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (started < addresses.size() && now < deadline) {
+                    attempts.submit(new Attempt(addresses.get(started++), port, (int) (deadline - now), settled));
+                    pending++;
+                }
+                if (pending == 0 || now >= deadline) {
+                    break;
+                }
+
+                long wait = started < addresses.size() ? ATTEMPT_DELAY : deadline - now;
+                Future<Socket> done = attempts.poll(wait, TimeUnit.MILLISECONDS);
+                if (done != null) {
+                    pending--;
+                    try {
+                        Socket socket = done.get();
+                        logger.info("connected to {} ({}) in {} ms", host, socket.getInetAddress().getHostAddress(), System.currentTimeMillis() - start);
+                        return socket;
+                    } catch (ExecutionException e) {
+                        failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                }
+            }
+
+            if (!settled.compareAndSet(false, true)) {
+                // an attempt connected while giving up
+                return takeWinner(attempts);
+            }
+        } catch (InterruptedException e) {
+            settled.set(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+
+        // the cached addresses may be stale
+        SshManager.getInstance().getResolver().invalidate(host);
+        if (pending > 0 || failure == null) {
+            throw new SocketTimeoutException("timeout: socket is not established");
+        }
+        throw failure;
+    }
+
+    private Socket takeWinner(CompletionService<Socket> attempts) throws InterruptedException {
+        while (true) {
+            try {
+                return attempts.take().get();
+            } catch (ExecutionException e) {
+                logger.debug("discarding failed attempt: {}", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Override
+    public InputStream getInputStream(Socket socket) throws IOException {
+        return socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream(Socket socket) throws IOException {
+        return socket.getOutputStream();
+    }
+
+    private List<InetAddress> sortAddresses(InetAddress[] resolved) {
+        // alternate address families, starting with the one preferred by the resolver
+        LinkedList<InetAddress> preferred = new LinkedList<>();
+        LinkedList<InetAddress> other = new LinkedList<>();
+        for (InetAddress address : resolved) {
+            if ((address instanceof Inet6Address) == (resolved[0] instanceof Inet6Address)) {
+                preferred.add(address);
+            } else {
+                other.add(address);
+            }
+        }
+        List<InetAddress> sorted = new ArrayList<>();
+        while (!preferred.isEmpty() || !other.isEmpty()) {
+            if (!preferred.isEmpty()) {
+                sorted.add(preferred.poll());
+            }
+            if (!other.isEmpty()) {
+                sorted.add(other.poll());
+            }
+        }
+        return sorted;
+    }
+
+    private class Attempt implements Callable<Socket> {
+        private final InetAddress address;
+        private final int port;
+        private final int timeout;
+        private final AtomicBoolean settled;
+
+        private Attempt(InetAddress address, int port, int timeout, AtomicBoolean settled) {
+            this.address = address;
+            this.port = port;
+            this.timeout = timeout;
+            this.settled = settled;
+        }
+
+        @Override
+        public Socket call() throws IOException {
+            Socket socket = new Socket();
+            try {
+                // jsch enables TCP_NODELAY as well once connected
+                socket.setTcpNoDelay(true);
+                if (options != null) {
+                    socket.setKeepAlive(options.getKeepAlive());
+                    if (options.getSendBufferSize() != null) {
+                        socket.setSendBufferSize(options.getSendBufferSize());
+                    }
+                    if (options.getReceiveBufferSize() != null) {
+                        socket.setReceiveBufferSize(options.getReceiveBufferSize());
+                    }
+                }
+                socket.connect(new InetSocketAddress(address, port), timeout);
+            } catch (IOException e) {
+                logger.debug("connection to {} failed: {}", address.getHostAddress(), e.getMessage());
+                socket.close();
+                throw e;
+            }
+
+            if (!settled.compareAndSet(false, true)) {
+                socket.close();
+                throw new IOException(String.format("connection to %s lost the race", address.getHostAddress()));
+            }
+            return socket;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import it.skarafaz.mercury.manager.SettingsManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SshSudoCache {
+    private static final Logger logger = LoggerFactory.getLogger(SshSudoCache.class);
+    private final Map<String, Entry> entries;
+
+    public SshSudoCache() {
+        entries = new HashMap<>();
+    }
+
+    public synchronized String get(String user, String host, int port) {
+        String key = getKey(user, host, port);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expires <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.password;
+    }
+
+    public synchronized void put(String user, String host, int port, String password) {
+        int ttl = SettingsManager.getInstance().getSudoCacheTtl();
+        if (ttl > 0) {
+            Entry entry = new Entry();
+            entry.password = password;
+            entry.expires = System.currentTimeMillis() + ttl * 1000L;
+            entries.put(getKey(user, host, port), entry);
+        }
+    }
+
+    public synchronized void remove(String user, String host, int port) {
+        entries.remove(getKey(user, host, port));
+    }
+
+    public synchronized void clear() {
+        if (!entries.isEmpty()) {
+            entries.clear();
+            logger.debug("sudo passwords wiped");
+        }
+    }
+
+    private String getKey(String user, String host, int port) {
+        return String.format("%s@%s:%d", user, host, port);
+    }
+
+    private static class Entry {
+        private String password;
+        private long expires;
+    }
+}
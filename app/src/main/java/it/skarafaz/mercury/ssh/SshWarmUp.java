@@ -0,0 +1,141 @@
+/*
+ * Mercury-SSH
+ * Copyright (C) 2018 Skarafaz
+ *
+ * This file is part of Mercury-SSH.
+ *
+ * Mercury-SSH is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Mercury-SSH is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Mercury-SSH.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.skarafaz.mercury.ssh;
+
+import com.jcraft.jsch.Cipher;
+import com.jcraft.jsch.ECDH;
+import com.jcraft.jsch.HASH;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.MAC;
+import com.jcraft.jsch.Random;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SshWarmUp implements Runnable {
+    private static final String[] HASHES = { "sha-1", "sha-256", "sha-384", "sha-512", "md5" };
+    private static final String[] SIGNATURES = { "signature.rsa", "signature.dss", "signature.ecdsa" };
+    private static final int[] ECDH_SIZES = { 256 };
+    private static final Logger logger = LoggerFactory.getLogger(SshWarmUp.class);
+
+    @Override
+    public void run() {
+        // jce providers, jsch algorithm classes and the random seed are otherwise loaded during the first handshake
+        long start = System.currentTimeMillis();
+        long random = time(new Runnable() {
+            @Override
+            public void run() {
+                warmUpRandom();
+            }
+        });
+        long ciphers = time(new Runnable() {
+            @Override
+            public void run() {
+                warmUpCiphers();
+            }
+        });
+        long macs = time(new Runnable() {
+            @Override
+            public void run() {
+                warmUpMacs();
+            }
+        });
+        long kex = time(new Runnable() {
+            @Override
+            public void run() {
+                warmUpKex();
+            }
+        });
+        logger.info("crypto warm-up done in {} ms (random {} ms, ciphers {} ms, macs {} ms, kex {} ms)",
+                System.currentTimeMillis() - start, random, ciphers, macs, kex);
+    }
+
+    private long time(Runnable step) {
+        long start = System.currentTimeMillis();
+        step.run();
+        return System.currentTimeMillis() - start;
+    }
+
+    private void warmUpRandom() {
+        try {
+            Random random = (Random) newInstance("random");
+            random.fill(new byte[16], 0, 16);
+        } catch (Exception e) {
+            logger.debug("random warm-up failed: {}", e.getMessage());
+        }
+    }
+
+    private void warmUpCiphers() {
+        for (String name : JSch.getConfig("cipher.c2s").split(",")) {
+            try {
+                Cipher cipher = (Cipher) newInstance(name);
+                cipher.init(Cipher.ENCRYPT_MODE, new byte[cipher.getBlockSize()], new byte[cipher.getIVSize()]);
+                cipher.update(new byte[16], 0, 16, new byte[16], 0);
+            } catch (Exception e) {
+                logger.debug("cipher {} warm-up failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void warmUpMacs() {
+        for (String name : JSch.getConfig("mac.c2s").split(",")) {
+            try {
+                MAC mac = (MAC) newInstance(name);
+                mac.init(new byte[mac.getBlockSize()]);
+                mac.update(0);
+                mac.doFinal(new byte[mac.getBlockSize()], 0);
+            } catch (Exception e) {
+                logger.debug("mac {} warm-up failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void warmUpKex() {
+        for (String name : HASHES) {
+            try {
+                HASH hash = (HASH) newInstance(name);
+                hash.init();
+                hash.update(new byte[1], 0, 1);
+                hash.digest();
+            } catch (Exception e) {
+                logger.debug("hash {} warm-up failed: {}", name, e.getMessage());
+            }
+        }
+        for (int size : ECDH_SIZES) {
+            try {
+                ECDH ecdh = (ECDH) newInstance("ecdh-sha2-nistp");
+                ecdh.init(size);
+            } catch (Exception e) {
+                logger.debug("ecdh {} warm-up failed: {}", size, e.getMessage());
+            }
+        }
+        for (String name : SIGNATURES) {
+            try {
+                newInstance(name);
+            } catch (Exception e) {
+                logger.debug("signature {} warm-up failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private Object newInstance(String name) throws Exception {
+        return Class.forName(JSch.getConfig(name)).newInstance();
+    }
+}